@@ -0,0 +1,52 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+
+/**
+ * Measures decoding the execution resource read on every poll, with a growing number of output parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionParsingBenchmark {
+
+    @Param({"0", "10", "100"})
+    public int outputCount;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        response = SyntheticExecution.execution(outputCount);
+    }
+
+    @Benchmark
+    public ExecutionSnapshot snapshot() throws IOException {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8);
+        try {
+            return OrchestratorClient.parseExecutionSnapshot(reader);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+import com.vmware.vro.jenkins.plugin.payload.PayloadEncoder;
+
+/**
+ * Compares building the execution request payload through a Gson tree serialized to a string, as the plugin used
+ * to, with the compiled {@link PayloadEncoder} streaming into the request body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int parameterCount;
+
+    private List<Parameter> parameters;
+    private PayloadEncoder encoder;
+    private BlackholeOutputStream out;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        parameters = SyntheticExecution.inputParameters(parameterCount);
+        encoder = PayloadEncoder.compile(parameters);
+        out = new BlackholeOutputStream(blackhole);
+    }
+
+    @Benchmark
+    public String legacyTree() {
+        JsonObject parametersJsonObj = new JsonObject();
+        JsonArray jsonArray = new JsonArray();
+        for (Parameter parameter : parameters) {
+            JsonObject jsonObject = new JsonObject();
+            int index = parameter.getName().indexOf('@');
+            String name = parameter.getName().substring(0, index);
+            String type = parameter.getName().substring(index + 1, parameter.getName().length());
+            jsonObject.addProperty("name", name);
+            jsonObject.addProperty("type", type);
+            jsonObject.add("value", legacyValueObject(type, parameter.getValue()));
+            jsonArray.add(jsonObject);
+        }
+        parametersJsonObj.add("parameters", jsonArray);
+        return parametersJsonObj.toString();
+    }
+
+    @Benchmark
+    public void compiledEncoder() throws IOException {
+        encoder.writeTo(out, parameters);
+    }
+
+    @Benchmark
+    public void compileAndEncode() throws IOException {
+        PayloadEncoder.compile(parameters).writeTo(out, parameters);
+    }
+
+    private static JsonObject legacyValueObject(String type, String value) {
+        if (type.equalsIgnoreCase("string") || type.equalsIgnoreCase("EncryptedString")
+                || type.equalsIgnoreCase("SecureString") || type.equalsIgnoreCase("number")
+                || type.equalsIgnoreCase("date") || type.equalsIgnoreCase("boolean")) {
+            JsonObject valueObj = new JsonObject();
+            valueObj.addProperty("value", value);
+            JsonObject valueTypeObj = new JsonObject();
+            if (type.equalsIgnoreCase("EncryptedString") || type.equalsIgnoreCase("SecureString")) {
+                valueTypeObj.add("string", valueObj);
+            } else {
+                valueTypeObj.add(type.toLowerCase(), valueObj);
+            }
+            return valueTypeObj;
+        }
+        JsonObject sdkObjectContent = new JsonObject();
+        sdkObjectContent.addProperty("id", value);
+        sdkObjectContent.addProperty("type", type);
+        JsonObject sdkObject = new JsonObject();
+        sdkObject.add("sdk-object", sdkObjectContent);
+        return sdkObject;
+    }
+
+    /*
+     * Stands in for the connection, so that only the encoding is measured.
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
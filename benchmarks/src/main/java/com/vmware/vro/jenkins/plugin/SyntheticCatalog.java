@@ -0,0 +1,137 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Generates workflow list responses shaped like the ones of /vco/api/workflows.
+ */
+public final class SyntheticCatalog {
+    private static final String NAME_PREFIX = "Workflow ";
+
+    private SyntheticCatalog() {
+    }
+
+    public static String workflowId(int index) {
+        return String.format("%08x-1c2d-4e5f-8a9b-%012x", index, (long) index * 7919);
+    }
+
+    public static String workflowName(int index) {
+        return NAME_PREFIX + index;
+    }
+
+    /**
+     * Returns a page of the catalog starting at the given index, with the total size of the catalog.
+     */
+    public static byte[] workflowsPage(String serverUrl, int startIndex, int count, int total) {
+        return page(serverUrl, startIndex, Math.min(startIndex + count, total), total);
+    }
+
+    /**
+     * Returns the result of a name query matching the workflow at the given index.
+     */
+    public static byte[] workflowPage(String serverUrl, int index) {
+        return page(serverUrl, index, index + 1, 1);
+    }
+
+    /**
+     * Returns the definition of the workflow at the given index with its input parameters.
+     */
+    public static byte[] workflowDefinition(int index, int inputCount) {
+        StringWriter out = new StringWriter(512 + inputCount * 64);
+        try {
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginObject();
+            writer.name("id").value(workflowId(index));
+            writer.name("name").value(workflowName(index));
+            writer.name("version").value("1.0." + (index % 10));
+            writer.name("input-parameters").beginArray();
+            for (int i = 0; i < inputCount; i++) {
+                writer.beginObject();
+                writer.name("name").value("input" + i);
+                writer.name("type").value("string");
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] workflows(int count) {
+        return workflowsPage("https://vro.example.com:8281", 0, count, count);
+    }
+
+    /**
+     * Returns the index of the workflow with the given generated name, -1 if it is not a generated name.
+     */
+    public static int indexOf(String workflowName) {
+        if (workflowName == null || !workflowName.startsWith(NAME_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(workflowName.substring(NAME_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the index of the workflow with the given generated id, -1 if it is not a generated id.
+     */
+    public static int indexOfId(String workflowId) {
+        try {
+            int index = Integer.parseInt(workflowId.substring(0, 8), 16);
+            return workflowId(index).equals(workflowId) ? index : -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] page(String serverUrl, int startIndex, int endIndex, int total) {
+        StringWriter out = new StringWriter(Math.max(endIndex - startIndex, 0) * 700 + 64);
+        try {
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginObject();
+            writer.name("link").beginArray();
+            for (int i = startIndex; i < endIndex; i++) {
+                String id = workflowId(i);
+                writer.beginObject();
+                writer.name("attributes").beginArray();
+                attribute(writer, "id", id);
+                attribute(writer, "name", workflowName(i));
+                attribute(writer, "description", "Synthetic workflow number " + i + " used for benchmarks");
+                attribute(writer, "categoryName", "Category " + (i % 50));
+                attribute(writer, "categoryId", workflowId(i % 50 + 1000000));
+                attribute(writer, "itemHref", serverUrl + "/vco/api/workflows/" + id + "/");
+                attribute(writer, "canExecute", "true");
+                attribute(writer, "canEdit", "true");
+                attribute(writer, "version", "1.0." + (i % 10));
+                writer.endArray();
+                writer.name("href").value(serverUrl + "/vco/api/workflows/" + id + "/");
+                writer.name("rel").value("down");
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.name("total").value(total);
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void attribute(JsonWriter writer, String name, String value) throws IOException {
+        writer.beginObject();
+        writer.name("value").value(value);
+        writer.name("name").value(name);
+        writer.endObject();
+    }
+}
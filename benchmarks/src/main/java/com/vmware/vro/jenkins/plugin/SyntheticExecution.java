@@ -0,0 +1,93 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+
+/**
+ * Generates execution responses shaped like the ones of /vco/api/workflows/{id}/executions/{id}/ and the input
+ * parameters of a job.
+ */
+public final class SyntheticExecution {
+    private static final String[] TYPES = {"string", "number", "boolean", "date", "SecureString", "VC:VirtualMachine"};
+    private static final String[] VALUES = {"vm-%d", "%d", "true", "2016-01-18T10:15:30.000Z", "secret-%d",
+            "vcenter.example.com,id:vm-%d"};
+
+    private SyntheticExecution() {
+    }
+
+    /**
+     * Returns a completed execution with the given number of string output parameters.
+     */
+    public static byte[] execution(int outputCount) {
+        return execution("8a7480a4528d4c7101528d8e5a5c0061", "completed", outputCount);
+    }
+
+    /**
+     * Returns an execution in the given state, output parameters are only listed once it completed.
+     */
+    public static byte[] execution(String executionId, String state, int outputCount) {
+        StringWriter out = new StringWriter(1024 + outputCount * 120);
+        try {
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginObject();
+            writer.name("id").value(executionId);
+            writer.name("state").value(state);
+            writer.name("href").value("https://vro.example.com:8281/vco/api/workflows/"
+                    + SyntheticCatalog.workflowId(1) + "/executions/" + executionId + "/");
+            writer.name("start-date").value("2016-01-18T10:15:30.000Z");
+            if (!"running".equals(state)) {
+                writer.name("end-date").value("2016-01-18T10:17:02.000Z");
+            }
+            if ("failed".equals(state)) {
+                writer.name("content-exception").value("Simulated workflow failure");
+            }
+            writer.name("started-by").value("jenkins@vsphere.local");
+            writer.name("name").value(SyntheticCatalog.workflowName(1));
+            writer.name("input-parameters").beginArray();
+            parameter(writer, "vmName", "string", "vm-01");
+            writer.endArray();
+            writer.name("output-parameters").beginArray();
+            for (int i = 0; "completed".equals(state) && i < outputCount; i++) {
+                parameter(writer, "output" + i, "string", "Value of the output parameter number " + i);
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns job input parameters cycling through the primitive types and an sdk object.
+     */
+    public static List<Parameter> inputParameters(int count) {
+        List<Parameter> parameters = new ArrayList<Parameter>(count);
+        for (int i = 0; i < count; i++) {
+            String type = TYPES[i % TYPES.length];
+            String value = String.format(VALUES[i % VALUES.length], i);
+            parameters.add(new Parameter("input" + i + '@' + type, type, value));
+        }
+        return parameters;
+    }
+
+    private static void parameter(JsonWriter writer, String name, String type, String value) throws IOException {
+        writer.beginObject();
+        writer.name("value").beginObject();
+        writer.name(type).beginObject();
+        writer.name("value").value(value);
+        writer.endObject();
+        writer.endObject();
+        writer.name("type").value(type);
+        writer.name("name").value(name);
+        writer.name("scope").value("local");
+        writer.endObject();
+    }
+}
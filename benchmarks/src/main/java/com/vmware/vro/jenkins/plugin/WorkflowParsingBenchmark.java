@@ -0,0 +1,89 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.vmware.vro.jenkins.plugin.model.Workflow;
+
+/**
+ * Compares decoding a workflow list by buffering the body into a string and walking a Gson tree, as the plugin used
+ * to, with the streaming {@link OrchestratorClient#parseWorkflows} path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowParsingBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int catalogSize;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        response = SyntheticCatalog.workflows(catalogSize);
+    }
+
+    @Benchmark
+    public void bufferedTree(Blackhole blackhole) throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(response),
+                StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = br.readLine()) != null) {
+            sb.append(line);
+        }
+        br.close();
+
+        JsonObject workflowsJson = new JsonParser().parse(sb.toString()).getAsJsonObject();
+        JsonArray jsonArray = workflowsJson.getAsJsonArray("link");
+        for (int i = 0; i < jsonArray.size(); i++) {
+            JsonArray attrJsonArray = jsonArray.get(i).getAsJsonObject().getAsJsonArray("attributes");
+            Workflow workflow = new Workflow();
+            for (int j = 0; j < attrJsonArray.size(); j++) {
+                JsonObject jsonObject = attrJsonArray.get(j).getAsJsonObject();
+                String name = jsonObject.get("name").getAsString();
+                if ("name".equals(name)) {
+                    workflow.setName(jsonObject.get("value").getAsString());
+                } else if ("id".equals(name)) {
+                    workflow.setId(jsonObject.get("value").getAsString());
+                }
+            }
+            blackhole.consume(workflow);
+        }
+    }
+
+    @Benchmark
+    public void streaming(final Blackhole blackhole) throws IOException {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8);
+        OrchestratorClient.parseWorkflows(reader, new OrchestratorClient.WorkflowHandler() {
+            @Override
+            public void handle(Workflow workflow) {
+                blackhole.consume(workflow);
+            }
+        });
+        reader.close();
+    }
+}
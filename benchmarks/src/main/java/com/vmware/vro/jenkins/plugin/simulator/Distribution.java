@@ -0,0 +1,56 @@
+package com.vmware.vro.jenkins.plugin.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random durations in milliseconds, used for the simulated response latencies and execution times.
+ */
+public abstract class Distribution {
+
+    public abstract long sample();
+
+    /**
+     * Parses "constant:50", "uniform:10-100" or "exponential:50" (the mean).
+     */
+    public static Distribution parse(String spec) {
+        int separator = spec.indexOf(':');
+        String kind = separator < 0 ? spec : spec.substring(0, separator);
+        String arguments = separator < 0 ? "" : spec.substring(separator + 1);
+        if ("constant".equals(kind)) {
+            return constant(Long.parseLong(arguments));
+        } else if ("uniform".equals(kind)) {
+            int dash = arguments.indexOf('-');
+            return uniform(Long.parseLong(arguments.substring(0, dash)), Long.parseLong(arguments.substring(dash + 1)));
+        } else if ("exponential".equals(kind)) {
+            return exponential(Long.parseLong(arguments));
+        }
+        throw new IllegalArgumentException("Unknown distribution " + spec);
+    }
+
+    public static Distribution constant(final long millis) {
+        return new Distribution() {
+            @Override
+            public long sample() {
+                return millis;
+            }
+        };
+    }
+
+    public static Distribution uniform(final long minMillis, final long maxMillis) {
+        return new Distribution() {
+            @Override
+            public long sample() {
+                return minMillis + ThreadLocalRandom.current().nextLong(maxMillis - minMillis + 1);
+            }
+        };
+    }
+
+    public static Distribution exponential(final long meanMillis) {
+        return new Distribution() {
+            @Override
+            public long sample() {
+                return (long) (-meanMillis * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+            }
+        };
+    }
+}
@@ -0,0 +1,224 @@
+package com.vmware.vro.jenkins.plugin.simulator;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.vro.jenkins.plugin.OrchestratorCallable;
+import com.vmware.vro.jenkins.plugin.OrchestratorClient;
+import com.vmware.vro.jenkins.plugin.SyntheticCatalog;
+import com.vmware.vro.jenkins.plugin.SyntheticExecution;
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+import com.vmware.vro.jenkins.plugin.model.Workflow;
+import com.vmware.vro.jenkins.plugin.util.BackoffPollingStrategy;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+
+/**
+ * Drives the plugin against one or more {@link OrchestratorSimulator} nodes: lists the catalog once through
+ * {@link OrchestratorClient}, then runs executions through {@link OrchestratorCallable}, as a build waiting on its
+ * workflow does, with a fixed number running at the same time. Reports throughput, latency percentiles, requests per
+ * execution and heap use.
+ * <p/>
+ * Options are given as --name=value, see {@link #DEFAULTS}.
+ */
+public final class LoadTest {
+    private static final Map<String, String> DEFAULTS = new TreeMap<String, String>();
+
+    static {
+        DEFAULTS.put("executions", "1000");
+        DEFAULTS.put("nodes", "1");
+        DEFAULTS.put("concurrency", "100");
+        DEFAULTS.put("catalogSize", "10000");
+        DEFAULTS.put("inputs", "5");
+        DEFAULTS.put("outputs", "10");
+        DEFAULTS.put("latency", "uniform:5-20");
+        DEFAULTS.put("executionDuration", "uniform:1000-5000");
+        DEFAULTS.put("errorRate", "0");
+        DEFAULTS.put("failureRate", "0");
+        DEFAULTS.put("maxConcurrentRequests", "200");
+        DEFAULTS.put("tenant", "vsphere.local");
+        DEFAULTS.put("pollInitialDelay", "500");
+        DEFAULTS.put("pollMaxDelay", "2000");
+        DEFAULTS.put("keyStore", "");
+        DEFAULTS.put("keyStorePassword", "");
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        PrintStream out = System.out;
+
+        SimulatorConfig config = new SimulatorConfig()
+                .setCatalogSize(Integer.parseInt(options.get("catalogSize")))
+                .setInputCount(Integer.parseInt(options.get("inputs")))
+                .setOutputCount(Integer.parseInt(options.get("outputs")))
+                .setLatency(Distribution.parse(options.get("latency")))
+                .setExecutionDuration(Distribution.parse(options.get("executionDuration")))
+                .setErrorRate(Double.parseDouble(options.get("errorRate")))
+                .setFailureRate(Double.parseDouble(options.get("failureRate")))
+                .setMaxConcurrentRequests(Integer.parseInt(options.get("maxConcurrentRequests")));
+        if (options.get("keyStore").length() > 0) {
+            config.setKeyStore(options.get("keyStore"), options.get("keyStorePassword"));
+        }
+        SimulatorCluster simulator = new SimulatorCluster(config, Integer.parseInt(options.get("nodes")));
+        simulator.start();
+        out.println("Simulator listening on " + simulator.getServerUrl() + " with " + options);
+
+        HeapSampler heapSampler = new HeapSampler();
+        heapSampler.start();
+        try {
+            listCatalog(simulator, options, out);
+            runExecutions(simulator, options, out);
+        } finally {
+            heapSampler.stop();
+            simulator.stop();
+        }
+        out.println(String.format("Heap used: peak %d MB, after GC %d MB", heapSampler.getPeakBytes() >> 20,
+                heapSampler.getUsedAfterGc() >> 20));
+    }
+
+    /*
+     * Lists the catalog twice, the second listing revalidates the pages kept from the first one.
+     */
+    private static void listCatalog(SimulatorCluster simulator, Map<String, String> options, PrintStream out)
+            throws Exception {
+        for (String listing : new String[]{"Listed", "Revalidated"}) {
+            simulator.resetCounters();
+            long start = System.nanoTime();
+            List<Workflow> workflows = new OrchestratorClient(buildParam(simulator, options, null)).fetchWorkflows();
+            long elapsed = System.nanoTime() - start;
+            out.println(String.format("%s %d workflows in %d ms with %d requests, %d not modified, %d KB received",
+                    listing, workflows.size(), TimeUnit.NANOSECONDS.toMillis(elapsed), simulator.getRequestCount(),
+                    simulator.getNotModifiedCount(), simulator.getResponseBytes() >> 10));
+        }
+    }
+
+    private static void runExecutions(final SimulatorCluster simulator, final Map<String, String> options,
+                                      PrintStream out) throws Exception {
+        int executions = Integer.parseInt(options.get("executions"));
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        final BuildParam buildParam = buildParam(simulator, options, SyntheticCatalog.workflowId(0));
+        final long[] latencies = new long[executions];
+        final AtomicLong failures = new AtomicLong();
+
+        simulator.resetCounters();
+        ExecutorService builds = Executors.newFixedThreadPool(concurrency, new DaemonThreadFactory("load test build"));
+        List<Future<?>> results = new ArrayList<Future<?>>(executions);
+        long start = System.nanoTime();
+        for (int i = 0; i < executions; i++) {
+            final int execution = i;
+            results.add(builds.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    long executionStart = System.nanoTime();
+                    try {
+                        new OrchestratorCallable(buildParam).call();
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[execution] = System.nanoTime() - executionStart;
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        builds.shutdown();
+
+        Arrays.sort(latencies);
+        out.println(String.format("Ran %d executions (%d failed) with %d concurrent builds in %d ms: %.1f executions/s",
+                executions, failures.get(), concurrency, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                executions / (elapsed / 1e9)));
+        out.println(String.format("Execution latency: p50 %d ms, p99 %d ms, max %d ms",
+                toMillis(percentile(latencies, 0.5)), toMillis(percentile(latencies, 0.99)),
+                toMillis(latencies[latencies.length - 1])));
+        out.println(String.format("Requests: %d (%.1f per execution), %d rejected, %d injected errors, by endpoint %s",
+                simulator.getRequestCount(), simulator.getRequestCount() / (double) executions,
+                simulator.getRejectedRequestCount(), simulator.getInjectedErrorCount(),
+                new TreeMap<String, Long>(simulator.getRequestCounts())));
+        out.println("Requests per node: " + simulator.getRequestCountPerNode());
+    }
+
+    private static BuildParam buildParam(SimulatorCluster simulator, Map<String, String> options,
+                                         String workflowId) {
+        List<Parameter> inputParams = SyntheticExecution.inputParameters(Integer.parseInt(options.get("inputs")));
+        return new BuildParam(simulator.getServerUrl(), "jenkins", "secret", options.get("tenant"), workflowId, true,
+                inputParams, new BackoffPollingStrategy(Long.parseLong(options.get("pollInitialDelay")),
+                BackoffPollingStrategy.DEFAULT_FACTOR, Long.parseLong(options.get("pollMaxDelay"))), 0);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected --name=value with one of "
+                        + DEFAULTS.keySet());
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        return new TreeMap<String, String>(options);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /*
+     * Samples the used heap while the test runs.
+     */
+    private static class HeapSampler implements Runnable {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ScheduledExecutorService scheduler =
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("load test heap sampler"));
+        private volatile long peakBytes;
+        private long usedAfterGc;
+
+        void start() {
+            scheduler.scheduleAtFixedRate(this, 0, 100, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            scheduler.shutdownNow();
+            System.gc();
+            usedAfterGc = memory.getHeapMemoryUsage().getUsed();
+        }
+
+        @Override
+        public void run() {
+            peakBytes = Math.max(peakBytes, memory.getHeapMemoryUsage().getUsed());
+        }
+
+        long getPeakBytes() {
+            return peakBytes;
+        }
+
+        long getUsedAfterGc() {
+            return usedAfterGc;
+        }
+    }
+}
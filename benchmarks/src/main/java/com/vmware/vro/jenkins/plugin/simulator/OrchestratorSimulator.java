@@ -0,0 +1,457 @@
+package com.vmware.vro.jenkins.plugin.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import com.vmware.vro.jenkins.plugin.SyntheticCatalog;
+import com.vmware.vro.jenkins.plugin.SyntheticExecution;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+
+/**
+ * In-process stand-in for the Orchestrator and identity REST endpoints used by the plugin:
+ * <ul>
+ * <li>POST /identity/api/tokens</li>
+ * <li>GET /vco/api/workflows, paged and with name conditions</li>
+ * <li>GET /vco/api/workflows/{id}/</li>
+ * <li>POST /vco/api/workflows/{id}/executions/, answered with 202 and a Location header</li>
+ * <li>GET /vco/api/workflows/{id}/executions/{id}/</li>
+ * <li>GET /vco/api/workflows/{id}/executions/{id}/syslogs, with one entry per {@value #LOG_INTERVAL_MILLIS} ms of
+ * execution, oldest first, with timestamp conditions and startIndex</li>
+ * <li>DELETE /vco/api/workflows/{id}/executions/{id}/state, canceling a running execution</li>
+ * </ul>
+ * Executions stay running for a duration drawn from the configured distribution. Every request is delayed by the
+ * configured latency and may be answered with an injected 503, requests beyond the concurrency limit get a 503 with
+ * {@code Retry-After}. Workflow lists and definitions carry an ETag and are answered with 304 when it matches, and
+ * bodies are gzip compressed when the client accepts it.
+ */
+public class OrchestratorSimulator {
+    private static final String WORKFLOWS_PATH = "/vco/api/workflows";
+    private static final String TOKENS_PATH = "/identity/api/tokens";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final long LOG_INTERVAL_MILLIS = 100;
+
+    private final SimulatorConfig config;
+    private final Semaphore permits;
+    private final ConcurrentMap<String, byte[]> pages = new ConcurrentHashMap<String, byte[]>();
+    private final ConcurrentMap<String, Execution> executions = new ConcurrentHashMap<String, Execution>();
+    private final AtomicLong executionIds = new AtomicLong();
+    private final AtomicLong tokenIds = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong notModifiedResponses = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> requestsByEndpoint = new ConcurrentHashMap<String, AtomicLong>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String serverUrl;
+
+    public OrchestratorSimulator(SimulatorConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface.
+     */
+    public void start() throws Exception {
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+        if (config.getKeyStore() != null) {
+            HttpsServer httpsServer = HttpsServer.create(address, 1024);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(createSslContext()));
+            server = httpsServer;
+        } else {
+            server = HttpServer.create(address, 1024);
+        }
+        executor = Executors.newCachedThreadPool(new DaemonThreadFactory("vRO simulator"));
+        server.setExecutor(executor);
+        server.createContext("/", new Router());
+        server.start();
+        serverUrl = String.format("%s://127.0.0.1:%d", config.getKeyStore() != null ? "https" : "http",
+                server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getRejectedRequestCount() {
+        return rejectedRequests.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedResponses.get();
+    }
+
+    /**
+     * Returns the number of response body bytes sent, after compression.
+     */
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * Returns the number of requests served per endpoint, such as "GET execution".
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : requestsByEndpoint.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+        rejectedRequests.set(0);
+        injectedErrors.set(0);
+        notModifiedResponses.set(0);
+        responseBytes.set(0);
+        requestsByEndpoint.clear();
+    }
+
+    private SSLContext createSslContext() throws Exception {
+        char[] password = config.getKeyStorePassword().toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = new FileInputStream(config.getKeyStore());
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private class Router implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try {
+                drain(exchange.getRequestBody());
+                if (!permits.tryAcquire()) {
+                    rejectedRequests.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, null);
+                    return;
+                }
+                try {
+                    sleep(config.getLatency().sample());
+                    if (chance(config.getErrorRate())) {
+                        injectedErrors.incrementAndGet();
+                        send(exchange, 503, null);
+                        return;
+                    }
+                    route(exchange);
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        List<String> segments = new ArrayList<String>();
+        for (String segment : path.split("/")) {
+            if (segment.length() > 0) {
+                segments.add(segment);
+            }
+        }
+
+        if ("POST".equals(method) && path.equals(TOKENS_PATH)) {
+            count("POST token");
+            createToken(exchange);
+        } else if (!path.startsWith(WORKFLOWS_PATH)) {
+            send(exchange, 404, null);
+        } else if ("GET".equals(method) && segments.size() == 3) {
+            count("GET workflows");
+            listWorkflows(exchange);
+        } else if ("GET".equals(method) && segments.size() == 4) {
+            count("GET workflow");
+            getWorkflow(exchange, segments.get(3));
+        } else if ("POST".equals(method) && segments.size() == 5 && "executions".equals(segments.get(4))) {
+            count("POST execution");
+            startExecution(exchange, segments.get(3));
+        } else if ("GET".equals(method) && segments.size() == 6 && "executions".equals(segments.get(4))) {
+            count("GET execution");
+            getExecution(exchange, segments.get(5));
+        } else if ("DELETE".equals(method) && segments.size() == 7 && "executions".equals(segments.get(4))
+                && "state".equals(segments.get(6))) {
+            count("DELETE execution state");
+            cancelExecution(exchange, segments.get(5));
+        } else if ("GET".equals(method) && segments.size() == 7 && "executions".equals(segments.get(4))
+                && "syslogs".equals(segments.get(6))) {
+            count("GET execution logs");
+            getExecutionLogs(exchange, segments.get(5));
+        } else {
+            send(exchange, 404, null);
+        }
+    }
+
+    private void createToken(HttpExchange exchange) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        JsonObject token = new JsonObject();
+        token.addProperty("id", "simulated-token-" + tokenIds.incrementAndGet());
+        token.addProperty("expires", format.format(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1))));
+        send(exchange, 200, token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void listWorkflows(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String condition = query.get("conditions");
+        if (condition != null && condition.startsWith("name=")) {
+            int index = SyntheticCatalog.indexOf(condition.substring("name=".length()));
+            if (index >= 0 && index < config.getCatalogSize()) {
+                sendCacheable(exchange, SyntheticCatalog.workflowPage(serverUrl, index));
+            } else {
+                sendCacheable(exchange, SyntheticCatalog.workflowsPage(serverUrl, 0, 0, 0));
+            }
+            return;
+        }
+        int startIndex = query.containsKey("startIndex") ? Integer.parseInt(query.get("startIndex")) : 0;
+        int maxResult = query.containsKey("maxResult") ? Integer.parseInt(query.get("maxResult"))
+                : config.getCatalogSize();
+        String key = startIndex + "/" + maxResult;
+        byte[] page = pages.get(key);
+        if (page == null) {
+            page = SyntheticCatalog.workflowsPage(serverUrl, startIndex, maxResult, config.getCatalogSize());
+            pages.putIfAbsent(key, page);
+        }
+        sendCacheable(exchange, page);
+    }
+
+    private void getWorkflow(HttpExchange exchange, String workflowId) throws IOException {
+        int index = SyntheticCatalog.indexOfId(workflowId);
+        if (index >= 0 && index < config.getCatalogSize()) {
+            sendCacheable(exchange, SyntheticCatalog.workflowDefinition(index, config.getInputCount()));
+        } else {
+            send(exchange, 404, null);
+        }
+    }
+
+    private void startExecution(HttpExchange exchange, String workflowId) throws IOException {
+        String executionId = String.format("%032x", executionIds.incrementAndGet());
+        boolean fails = chance(config.getFailureRate());
+        executions.put(executionId, new Execution(
+                System.currentTimeMillis() + config.getExecutionDuration().sample(), fails));
+        exchange.getResponseHeaders().set("Location",
+                serverUrl + WORKFLOWS_PATH + "/" + workflowId + "/executions/" + executionId + "/");
+        send(exchange, 202, null);
+    }
+
+    private void getExecution(HttpExchange exchange, String executionId) throws IOException {
+        Execution execution = executions.get(executionId);
+        if (execution == null) {
+            send(exchange, 404, null);
+            return;
+        }
+        String state;
+        if (execution.canceled) {
+            state = "canceled";
+        } else if (System.currentTimeMillis() < execution.completesAt) {
+            state = "running";
+        } else {
+            state = execution.fails ? "failed" : "completed";
+        }
+        send(exchange, 200, SyntheticExecution.execution(executionId, state, config.getOutputCount()));
+    }
+
+    private void cancelExecution(HttpExchange exchange, String executionId) throws IOException {
+        Execution execution = executions.get(executionId);
+        if (execution == null) {
+            send(exchange, 404, null);
+        } else if (execution.canceled || System.currentTimeMillis() >= execution.completesAt) {
+            send(exchange, 409, null);
+        } else {
+            execution.canceled = true;
+            send(exchange, 204, null);
+        }
+    }
+
+    private void getExecutionLogs(HttpExchange exchange, String executionId) throws IOException {
+        Execution execution = executions.get(executionId);
+        if (execution == null) {
+            send(exchange, 404, null);
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int maxResult = query.containsKey("maxResult") ? Integer.parseInt(query.get("maxResult")) : 100;
+        int startIndex = query.containsKey("startIndex") ? Integer.parseInt(query.get("startIndex")) : 0;
+        long since = 0;
+        String condition = query.get("conditions");
+        if (condition != null && condition.startsWith("timestamp>=")) {
+            since = Long.parseLong(condition.substring("timestamp>=".length()));
+        }
+        long end = Math.min(System.currentTimeMillis(), execution.completesAt);
+        long first = Math.max(execution.startedAt, since);
+        //Entries are logged at fixed offsets from the start of the execution
+        first += (LOG_INTERVAL_MILLIS - (first - execution.startedAt) % LOG_INTERVAL_MILLIS) % LOG_INTERVAL_MILLIS;
+        first += startIndex * LOG_INTERVAL_MILLIS;
+
+        JsonArray logs = new JsonArray();
+        for (long timestamp = first; timestamp <= end && logs.size() < maxResult; timestamp += LOG_INTERVAL_MILLIS) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("severity", "info");
+            entry.addProperty("time-stamp-val", timestamp);
+            entry.addProperty("short-description", "Step " + (timestamp - execution.startedAt) / LOG_INTERVAL_MILLIS);
+            JsonObject log = new JsonObject();
+            log.add("entry", entry);
+            logs.add(log);
+        }
+        JsonObject body = new JsonObject();
+        body.add("logs", logs);
+        send(exchange, 200, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void count(String endpoint) {
+        AtomicLong count = requestsByEndpoint.get(endpoint);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = requestsByEndpoint.putIfAbsent(endpoint, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<String, String>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    /*
+     * The catalog never changes while the simulator runs, so its size and input count make a valid ETag.
+     */
+    private void sendCacheable(HttpExchange exchange, byte[] body) throws IOException {
+        String etag = "\"" + config.getCatalogSize() + "-" + config.getInputCount() + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.incrementAndGet();
+            send(exchange, 304, null);
+        } else {
+            send(exchange, 200, body);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", APPLICATION_JSON);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        responseBytes.addAndGet(body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) != -1) {
+            //Discard the request body so that the connection can be reused
+        }
+        in.close();
+    }
+
+    private static boolean chance(double rate) {
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Execution {
+        private final long startedAt = System.currentTimeMillis();
+        private final long completesAt;
+        private final boolean fails;
+        private volatile boolean canceled;
+
+        Execution(long completesAt, boolean fails) {
+            this.completesAt = completesAt;
+            this.fails = fails;
+        }
+    }
+}
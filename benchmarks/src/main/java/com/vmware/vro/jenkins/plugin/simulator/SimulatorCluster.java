@@ -0,0 +1,114 @@
+package com.vmware.vro.jenkins.plugin.simulator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several {@link OrchestratorSimulator} nodes with the same configuration, seen as one Orchestrator cluster whose
+ * server url lists every node. Counters are summed over the nodes.
+ */
+public class SimulatorCluster {
+    private final List<OrchestratorSimulator> nodes = new ArrayList<OrchestratorSimulator>();
+
+    public SimulatorCluster(SimulatorConfig config, int nodeCount) {
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new OrchestratorSimulator(config));
+        }
+    }
+
+    public void start() throws Exception {
+        for (OrchestratorSimulator node : nodes) {
+            node.start();
+        }
+    }
+
+    public void stop() {
+        for (OrchestratorSimulator node : nodes) {
+            node.stop();
+        }
+    }
+
+    /**
+     * Returns the urls of the nodes separated by commas.
+     */
+    public String getServerUrl() {
+        StringBuilder serverUrl = new StringBuilder();
+        for (OrchestratorSimulator node : nodes) {
+            if (serverUrl.length() > 0) {
+                serverUrl.append(',');
+            }
+            serverUrl.append(node.getServerUrl());
+        }
+        return serverUrl.toString();
+    }
+
+    public long getRequestCount() {
+        long count = 0;
+        for (OrchestratorSimulator node : nodes) {
+            count += node.getRequestCount();
+        }
+        return count;
+    }
+
+    public long getRejectedRequestCount() {
+        long count = 0;
+        for (OrchestratorSimulator node : nodes) {
+            count += node.getRejectedRequestCount();
+        }
+        return count;
+    }
+
+    public long getInjectedErrorCount() {
+        long count = 0;
+        for (OrchestratorSimulator node : nodes) {
+            count += node.getInjectedErrorCount();
+        }
+        return count;
+    }
+
+    public long getNotModifiedCount() {
+        long count = 0;
+        for (OrchestratorSimulator node : nodes) {
+            count += node.getNotModifiedCount();
+        }
+        return count;
+    }
+
+    public long getResponseBytes() {
+        long bytes = 0;
+        for (OrchestratorSimulator node : nodes) {
+            bytes += node.getResponseBytes();
+        }
+        return bytes;
+    }
+
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (OrchestratorSimulator node : nodes) {
+            for (Map.Entry<String, Long> entry : node.getRequestCounts().entrySet()) {
+                Long count = counts.get(entry.getKey());
+                counts.put(entry.getKey(), count != null ? count + entry.getValue() : entry.getValue());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of requests served by each node, in node order.
+     */
+    public List<Long> getRequestCountPerNode() {
+        List<Long> counts = new ArrayList<Long>();
+        for (OrchestratorSimulator node : nodes) {
+            counts.add(node.getRequestCount());
+        }
+        return counts;
+    }
+
+    public void resetCounters() {
+        for (OrchestratorSimulator node : nodes) {
+            node.resetCounters();
+        }
+    }
+}
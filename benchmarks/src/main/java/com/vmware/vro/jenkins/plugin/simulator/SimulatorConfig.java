@@ -0,0 +1,130 @@
+package com.vmware.vro.jenkins.plugin.simulator;
+
+/**
+ * Settings of an {@link OrchestratorSimulator}.
+ */
+public class SimulatorConfig {
+    private int catalogSize = 1000;
+    private int inputCount = 5;
+    private int outputCount = 10;
+    private Distribution latency = Distribution.constant(0);
+    private Distribution executionDuration = Distribution.uniform(1000, 5000);
+    private double errorRate;
+    private double failureRate;
+    private int maxConcurrentRequests = 200;
+    private String keyStore;
+    private String keyStorePassword;
+
+    public int getCatalogSize() {
+        return catalogSize;
+    }
+
+    /**
+     * Number of workflows listed by the server.
+     */
+    public SimulatorConfig setCatalogSize(int catalogSize) {
+        this.catalogSize = catalogSize;
+        return this;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Number of input parameters of every workflow.
+     */
+    public SimulatorConfig setInputCount(int inputCount) {
+        this.inputCount = inputCount;
+        return this;
+    }
+
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * Number of output parameters of a completed execution.
+     */
+    public SimulatorConfig setOutputCount(int outputCount) {
+        this.outputCount = outputCount;
+        return this;
+    }
+
+    public Distribution getLatency() {
+        return latency;
+    }
+
+    /**
+     * Time taken by the server before answering any request.
+     */
+    public SimulatorConfig setLatency(Distribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public Distribution getExecutionDuration() {
+        return executionDuration;
+    }
+
+    /**
+     * Time an execution stays running.
+     */
+    public SimulatorConfig setExecutionDuration(Distribution executionDuration) {
+        this.executionDuration = executionDuration;
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Share of requests answered with a 503 error.
+     */
+    public SimulatorConfig setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Share of executions that end in the failed state.
+     */
+    public SimulatorConfig setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Requests served at the same time, further requests are rejected with a 503 like an overloaded appliance.
+     */
+    public SimulatorConfig setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    public String getKeyStore() {
+        return keyStore;
+    }
+
+    public String getKeyStorePassword() {
+        return keyStorePassword;
+    }
+
+    /**
+     * Serves HTTPS with the key of the given JKS key store instead of plain HTTP.
+     */
+    public SimulatorConfig setKeyStore(String keyStore, String keyStorePassword) {
+        this.keyStore = keyStore;
+        this.keyStorePassword = keyStorePassword;
+        return this;
+    }
+}
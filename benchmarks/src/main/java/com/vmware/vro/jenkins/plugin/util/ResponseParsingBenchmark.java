@@ -0,0 +1,53 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.vmware.vro.jenkins.plugin.SyntheticCatalog;
+
+/**
+ * Measures {@link RestClient#parseResponse(HttpResponse)} reading a whole response body into a string.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int catalogSize;
+
+    private RestClient restClient;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        restClient = new RestClient("https://vro.example.com:8281", "user", "password", null);
+        body = SyntheticCatalog.workflows(catalogSize);
+    }
+
+    @Benchmark
+    public String parseResponse() throws IOException {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.setEntity(new ByteArrayEntity(body));
+        return restClient.parseResponse(response);
+    }
+}
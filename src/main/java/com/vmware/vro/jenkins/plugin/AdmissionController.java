@@ -0,0 +1,370 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vmware.vro.jenkins.plugin.util.OrchestratorMetrics;
+
+/**
+ * Admits the workflow submissions of the controller's builds to each Orchestrator server, so that a burst of builds
+ * is queued in Jenkins instead of overloading the server.
+ * <p/>
+ * A build holds a permit of its server from submission until it stops waiting for the execution. A server admits at
+ * most {@link Limits#maxRunning} permits at a time and at most {@link Limits#maxPerMinute} submissions per minute,
+ * with bursts of up to {@link Limits#burst} submissions. Builds over either limit wait in a queue where higher
+ * priorities go first and, within a priority, the fairness groups (jobs or folders) take turns, so that a job
+ * triggering many builds does not hold back the others. Waiting builds log their position in the queue.
+ */
+final class AdmissionController {
+    static final long LOG_INTERVAL_MILLIS = 10000L;
+
+    private static final AdmissionController INSTANCE = new AdmissionController();
+
+    private final ConcurrentMap<String, ServerQueue> queues = new ConcurrentHashMap<String, ServerQueue>();
+    private volatile Limits limits = new Limits(0, 0, 0);
+
+    private AdmissionController() {
+    }
+
+    static AdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the limits of every server, 0 removes a limit. Waiting builds are admitted at once if the new limits allow
+     * it.
+     */
+    void setLimits(int maxRunning, int maxPerMinute, int burst) {
+        limits = new Limits(maxRunning, maxPerMinute, burst);
+        for (ServerQueue queue : queues.values()) {
+            queue.limitsChanged();
+        }
+    }
+
+    /**
+     * Waits until the given server admits a submission and returns the permit to release once the build no longer
+     * waits for its execution.
+     *
+     * @param group    the fairness group of the build, such as its job or folder
+     * @param priority builds with a higher priority are admitted first
+     */
+    Permit acquire(String serverUrl, String group, int priority, PrintStream logger) throws InterruptedException {
+        ServerQueue queue = queues.get(serverUrl);
+        if (queue == null) {
+            ServerQueue newQueue = new ServerQueue(serverUrl);
+            queue = queues.putIfAbsent(serverUrl, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        return queue.acquire(group != null ? group : "", priority, logger);
+    }
+
+    /**
+     * The limits of each server, 0 meaning no limit.
+     */
+    static final class Limits {
+        final int maxRunning;
+        final int maxPerMinute;
+        final int burst;
+
+        Limits(int maxRunning, int maxPerMinute, int burst) {
+            this.maxRunning = Math.max(maxRunning, 0);
+            this.maxPerMinute = Math.max(maxPerMinute, 0);
+            this.burst = Math.max(burst, 1);
+        }
+
+        boolean isUnlimited() {
+            return maxRunning == 0 && maxPerMinute == 0;
+        }
+    }
+
+    /**
+     * The right of a build to run a submission, released once.
+     */
+    final class Permit {
+        private final ServerQueue queue;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ServerQueue queue) {
+            this.queue = queue;
+        }
+
+        void release() {
+            if (queue != null && released.compareAndSet(false, true)) {
+                queue.release();
+            }
+        }
+    }
+
+    private static final class Ticket {
+        final String group;
+        final int priority;
+        boolean admitted;
+
+        Ticket(String group, int priority) {
+            this.group = group;
+            this.priority = priority;
+        }
+    }
+
+    /*
+     * The running submissions, token bucket and queue of one server, guarded by the queue's monitor.
+     */
+    private final class ServerQueue {
+        private final String serverUrl;
+        //Waiting tickets by priority, highest first, then by group in turn order
+        private final TreeMap<Integer, LinkedHashMap<String, ArrayDeque<Ticket>>> waiting =
+                new TreeMap<Integer, LinkedHashMap<String, ArrayDeque<Ticket>>>(Collections.<Integer>reverseOrder());
+        private int waitingCount;
+        private int running;
+        private double tokens = -1;
+        private long refilledAt;
+
+        ServerQueue(String serverUrl) {
+            this.serverUrl = serverUrl;
+        }
+
+        Permit acquire(String group, int priority, PrintStream logger) throws InterruptedException {
+            Limits current = limits;
+            if (current.isUnlimited()) {
+                return new Permit(null);
+            }
+            long start = System.nanoTime();
+            Ticket ticket = new Ticket(group, priority);
+            synchronized (this) {
+                if (waitingCount == 0 && canAdmit(current)) {
+                    admit(current);
+                    recordQueue();
+                    return new Permit(this);
+                }
+                enqueue(ticket);
+                recordQueue();
+            }
+            int loggedPosition = -1;
+            long loggedAt = 0;
+            try {
+                while (true) {
+                    String message = null;
+                    synchronized (this) {
+                        admitWaiting();
+                        if (ticket.admitted) {
+                            break;
+                        }
+                        long now = System.nanoTime();
+                        int position = positionOf(ticket);
+                        if (loggedPosition == -1 || (position != loggedPosition
+                                && TimeUnit.NANOSECONDS.toMillis(now - loggedAt) >= LOG_INTERVAL_MILLIS)) {
+                            message = String.format("Waiting for admission to Orchestrator server %s : position %d "
+                                    + "of %d in the queue, %d admitted builds running", serverUrl, position,
+                                    waitingCount, running);
+                            loggedPosition = position;
+                            loggedAt = now;
+                        } else {
+                            wait(Math.min(millisUntilToken(), LOG_INTERVAL_MILLIS));
+                        }
+                    }
+                    if (message != null) {
+                        logger.println(message);
+                    }
+                }
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    if (ticket.admitted) {
+                        running--;
+                    } else {
+                        remove(ticket);
+                    }
+                    admitWaiting();
+                    recordQueue();
+                }
+                throw e;
+            }
+            long waitedNanos = System.nanoTime() - start;
+            OrchestratorMetrics.recordAdmissionWait(serverUrl, waitedNanos);
+            logger.println(String.format("Admitted to Orchestrator server %s after %d seconds in the queue", serverUrl,
+                    TimeUnit.NANOSECONDS.toSeconds(waitedNanos)));
+            return new Permit(this);
+        }
+
+        synchronized void release() {
+            running--;
+            admitWaiting();
+            recordQueue();
+        }
+
+        synchronized void limitsChanged() {
+            admitWaiting();
+            //Let the waiting builds compute their wait for the next token again
+            notifyAll();
+        }
+
+        /*
+         * Admits the waiting tickets in turn while the limits allow it, and wakes their builds.
+         */
+        private void admitWaiting() {
+            Limits current = limits;
+            boolean admitted = false;
+            while (waitingCount > 0 && (current.isUnlimited() || canAdmit(current))) {
+                Ticket ticket = pollNext();
+                ticket.admitted = true;
+                if (!current.isUnlimited()) {
+                    admit(current);
+                } else {
+                    running++;
+                }
+                admitted = true;
+            }
+            if (admitted) {
+                recordQueue();
+                notifyAll();
+            }
+        }
+
+        private boolean canAdmit(Limits current) {
+            if (current.maxRunning > 0 && running >= current.maxRunning) {
+                return false;
+            }
+            return current.maxPerMinute == 0 || refill(current) >= 1;
+        }
+
+        private void admit(Limits current) {
+            running++;
+            if (current.maxPerMinute > 0) {
+                tokens--;
+            }
+        }
+
+        /*
+         * Adds the tokens earned since the last refill, up to the burst, and returns the tokens available.
+         */
+        private double refill(Limits current) {
+            long now = System.nanoTime();
+            if (tokens < 0) {
+                tokens = current.burst;
+            } else {
+                double earned = (now - refilledAt) * current.maxPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+                tokens = Math.min(tokens + earned, current.burst);
+            }
+            refilledAt = now;
+            return tokens;
+        }
+
+        /*
+         * Milliseconds until the next token, or the log interval when submissions are not rate limited and waiting
+         * builds are woken by releases. The bucket is refilled first, the tokens may not have been counted since the
+         * last admission.
+         */
+        private long millisUntilToken() {
+            Limits current = limits;
+            if (current.maxPerMinute == 0 || refill(current) >= 1) {
+                return LOG_INTERVAL_MILLIS;
+            }
+            double millisPerToken = TimeUnit.MINUTES.toMillis(1) / (double) current.maxPerMinute;
+            return Math.max((long) Math.ceil((1 - tokens) * millisPerToken), 1);
+        }
+
+        private void enqueue(Ticket ticket) {
+            LinkedHashMap<String, ArrayDeque<Ticket>> groups = waiting.get(ticket.priority);
+            if (groups == null) {
+                groups = new LinkedHashMap<String, ArrayDeque<Ticket>>();
+                waiting.put(ticket.priority, groups);
+            }
+            ArrayDeque<Ticket> tickets = groups.get(ticket.group);
+            if (tickets == null) {
+                tickets = new ArrayDeque<Ticket>();
+                groups.put(ticket.group, tickets);
+            }
+            tickets.add(ticket);
+            waitingCount++;
+        }
+
+        /*
+         * Takes the first ticket of the first group of the highest priority and moves the group to the end of the
+         * turn order.
+         */
+        private Ticket pollNext() {
+            Map.Entry<Integer, LinkedHashMap<String, ArrayDeque<Ticket>>> first = waiting.firstEntry();
+            LinkedHashMap<String, ArrayDeque<Ticket>> groups = first.getValue();
+            Iterator<Map.Entry<String, ArrayDeque<Ticket>>> iterator = groups.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Ticket>> group = iterator.next();
+            iterator.remove();
+            Ticket ticket = group.getValue().poll();
+            if (!group.getValue().isEmpty()) {
+                groups.put(group.getKey(), group.getValue());
+            }
+            if (groups.isEmpty()) {
+                waiting.remove(first.getKey());
+            }
+            waitingCount--;
+            return ticket;
+        }
+
+        private void remove(Ticket ticket) {
+            LinkedHashMap<String, ArrayDeque<Ticket>> groups = waiting.get(ticket.priority);
+            ArrayDeque<Ticket> tickets = groups != null ? groups.get(ticket.group) : null;
+            if (tickets != null && tickets.remove(ticket)) {
+                waitingCount--;
+                if (tickets.isEmpty()) {
+                    groups.remove(ticket.group);
+                }
+                if (groups.isEmpty()) {
+                    waiting.remove(ticket.priority);
+                }
+            }
+        }
+
+        /*
+         * The 1-based position of a ticket in the admission order: the tickets of higher priorities, then the turns
+         * of the other groups of its priority until its own.
+         */
+        private int positionOf(Ticket ticket) {
+            int ahead = 0;
+            for (Map.Entry<Integer, LinkedHashMap<String, ArrayDeque<Ticket>>> entry : waiting.entrySet()) {
+                if (entry.getKey() > ticket.priority) {
+                    for (ArrayDeque<Ticket> tickets : entry.getValue().values()) {
+                        ahead += tickets.size();
+                    }
+                    continue;
+                }
+                int index = indexOf(entry.getValue().get(ticket.group), ticket);
+                boolean before = true;
+                for (Map.Entry<String, ArrayDeque<Ticket>> group : entry.getValue().entrySet()) {
+                    if (group.getKey().equals(ticket.group)) {
+                        ahead += index;
+                        before = false;
+                    } else {
+                        //Groups ahead in the turn order get one more turn before the ticket's
+                        ahead += Math.min(group.getValue().size(), before ? index + 1 : index);
+                    }
+                }
+                break;
+            }
+            return ahead + 1;
+        }
+
+        private int indexOf(ArrayDeque<Ticket> tickets, Ticket ticket) {
+            int index = 0;
+            for (Ticket other : tickets) {
+                if (other == ticket) {
+                    break;
+                }
+                index++;
+            }
+            return index;
+        }
+
+        private void recordQueue() {
+            OrchestratorMetrics.recordAdmissionQueue(serverUrl, waitingCount, running);
+        }
+    }
+}
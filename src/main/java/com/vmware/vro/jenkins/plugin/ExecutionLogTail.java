@@ -0,0 +1,116 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vmware.vro.jenkins.plugin.model.ExecutionLogEntry;
+
+/**
+ * Copies the log of a workflow execution to the build console as it grows.
+ * <p/>
+ * Each call to {@link #poll()} asks for the entries logged since the last one printed, at most {@link #PAGE_SIZE}
+ * entries per request and {@link #MAX_PAGES_PER_POLL} requests per poll, so only one page is held in memory however
+ * much the workflow logs. Entries are printed once: the cursor is the time of the last printed entry, and the entries
+ * already printed at that time are skipped by the server, so that pages advance even when more than a page of entries
+ * share one time. Failures to read the log never fail the build, the tail stops after
+ * {@link #MAX_FAILURES} failures in a row.
+ */
+class ExecutionLogTail {
+    private static final Logger LOGGER = Logger.getLogger(ExecutionLogTail.class.getName());
+
+    private static final String PROPERTY_PREFIX = ExecutionLogTail.class.getName() + ".";
+
+    static final int PAGE_SIZE = Integer.getInteger(PROPERTY_PREFIX + "pageSize", 200);
+    static final int MAX_PAGES_PER_POLL = Integer.getInteger(PROPERTY_PREFIX + "maxPagesPerPoll", 5);
+    static final int MAX_FAILURES = 3;
+
+    private static final Comparator<ExecutionLogEntry> BY_TIME = new Comparator<ExecutionLogEntry>() {
+        @Override
+        public int compare(ExecutionLogEntry first, ExecutionLogEntry second) {
+            return first.getTimestamp() < second.getTimestamp() ? -1
+                    : (first.getTimestamp() > second.getTimestamp() ? 1 : 0);
+        }
+    };
+
+    private final OrchestratorClient client;
+    private final String executionUrl;
+    private final PrintStream logger;
+
+    private long cursor;
+    private int printedAtCursor;
+    private int failures;
+
+    ExecutionLogTail(OrchestratorClient client, String executionUrl, PrintStream logger) {
+        this.client = client;
+        this.executionUrl = executionUrl;
+        this.logger = logger;
+    }
+
+    /**
+     * Prints the entries logged since the previous poll and returns the number of requests sent. Polls of one
+     * execution must not run concurrently.
+     */
+    int poll() {
+        if (failures >= MAX_FAILURES) {
+            return 0;
+        }
+        int requests = 0;
+        try {
+            for (int page = 0; page < MAX_PAGES_PER_POLL; page++) {
+                final List<ExecutionLogEntry> entries = new ArrayList<ExecutionLogEntry>();
+                requests++;
+                int count = client.fetchExecutionLogs(executionUrl, cursor, printedAtCursor, PAGE_SIZE,
+                        new OrchestratorClient.LogEntryHandler() {
+                            @Override
+                            public void handle(ExecutionLogEntry entry) {
+                                entries.add(entry);
+                            }
+                        });
+                print(entries);
+                if (count < PAGE_SIZE) {
+                    break;
+                }
+            }
+            failures = 0;
+        } catch (Exception e) {
+            failures++;
+            LOGGER.log(Level.FINE, "Failed to read the log of execution " + executionUrl, e);
+        }
+        return requests;
+    }
+
+    private void print(List<ExecutionLogEntry> entries) {
+        //The stable sort keeps the order of the server for entries of the same time, which startIndex relies on
+        Collections.sort(entries, BY_TIME);
+        int printed = 0;
+        StringBuilder batch = new StringBuilder();
+        for (ExecutionLogEntry entry : entries) {
+            if (entry.getTimestamp() < cursor) {
+                continue;
+            }
+            if (entry.getTimestamp() > cursor) {
+                cursor = entry.getTimestamp();
+                printedAtCursor = 0;
+            }
+            printedAtCursor++;
+            printed++;
+            batch.append("[vRO] ");
+            if (entry.getTime() != null) {
+                batch.append(entry.getTime()).append(' ');
+            }
+            if (entry.getSeverity() != null) {
+                batch.append(entry.getSeverity()).append(' ');
+            }
+            batch.append(entry.getDescription()).append('\n');
+        }
+        if (printed > 0) {
+            logger.print(batch);
+            logger.flush();
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.concurrent.FutureCallback;
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import com.vmware.vro.jenkins.plugin.util.OrchestratorMetrics;
+import com.vmware.vro.jenkins.plugin.util.PollingStrategy;
+import com.vmware.vro.jenkins.plugin.util.RetryLaterException;
+import com.vmware.vro.jenkins.plugin.util.RetryPolicy;
+import com.vmware.vro.jenkins.plugin.util.ServerUnavailableException;
+
+/**
+ * Polls every workflow execution waited on in this JVM from one shared schedule.
+ * <p/>
+ * Tracked executions sit in a single queue ordered by their next poll time. One dispatcher thread takes them off when
+ * they are due and hands them to a small fixed pool of workers of their server, so thousands of waiting builds only
+ * need a handful of threads. The workers of a server are shut down when it has no executions left to poll or cancel.
+ * Each server also has a poll budget: polls beyond {@link #MAX_POLLS_PER_SECOND} are
+ * pushed back to the next free slot instead of being sent at once. The log pages read for the build consoles are
+ * charged to the same budget.
+ * <p/>
+ * An execution that misses its deadline, or whose watch is cancelled because the build was aborted, is also cancelled
+ * on the server so that it does not keep running there. Polls refused by an open circuit breaker are delayed until
+ * the breaker lets requests through again, they do not fail the build. Transient failures of a poll are retried by
+ * queueing the watch again after the backoff of the {@link RetryPolicy}, never by sleeping in a worker.
+ * <p/>
+ * With {@link #ASYNC_POLLS} the polls are sent with the non-blocking client: a worker only sends the request and the
+ * snapshot is handled when it arrives, so the workers are not held while the servers answer.
+ */
+public final class ExecutionMonitor {
+    private static final Logger LOGGER = Logger.getLogger(ExecutionMonitor.class.getName());
+
+    private static final String PROPERTY_PREFIX = ExecutionMonitor.class.getName() + ".";
+
+    static final int WORKERS_PER_SERVER = Integer.getInteger(PROPERTY_PREFIX + "workersPerServer", 2);
+    static final int MAX_POLLS_PER_SECOND = Integer.getInteger(PROPERTY_PREFIX + "maxPollsPerSecond", 20);
+    static final boolean ASYNC_POLLS = Boolean.getBoolean(PROPERTY_PREFIX + "asyncPolls");
+
+    private static final ExecutionMonitor INSTANCE = new ExecutionMonitor();
+
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("vRO execution cancel retry"));
+
+    private final DelayQueue<Watch> queue = new DelayQueue<Watch>();
+    private final ConcurrentMap<String, ServerPoller> pollers = new ConcurrentHashMap<String, ServerPoller>();
+    private final AtomicInteger watchCount = new AtomicInteger();
+
+    private ExecutionMonitor() {
+        new DaemonThreadFactory("vRO execution dispatcher").newThread(new Dispatcher()).start();
+    }
+
+    public static ExecutionMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts tracking the execution and returns a future completed with its final snapshot. The future fails if the
+     * execution does not complete within the wait timeout of the build param, and cancelling it stops the polling.
+     * In both cases the execution is cancelled on the server.
+     */
+    public Future<ExecutionSnapshot> watch(BuildParam buildParam, String executionUrl) {
+        return watch(buildParam, executionUrl, null, null);
+    }
+
+    /**
+     * Starts tracking the execution like {@link #watch(BuildParam, String)}, and copies the execution log to the
+     * given build console after every poll.
+     */
+    public Future<ExecutionSnapshot> watch(BuildParam buildParam, String executionUrl, PrintStream console) {
+        return watch(buildParam, executionUrl, console, null);
+    }
+
+    /**
+     * Starts tracking the execution like {@link #watch(BuildParam, String)}, and also reports its end to the
+     * callback, so that no thread has to wait on the future. The callback runs on the thread that completes the watch
+     * and must not block.
+     */
+    public Future<ExecutionSnapshot> watch(BuildParam buildParam, String executionUrl,
+                                           FutureCallback<ExecutionSnapshot> callback) {
+        return watch(buildParam, executionUrl, null, callback);
+    }
+
+    private Future<ExecutionSnapshot> watch(BuildParam buildParam, String executionUrl, PrintStream console,
+                                            FutureCallback<ExecutionSnapshot> callback) {
+        //Executions only exist on the cluster node that accepted them
+        OrchestratorCluster cluster = OrchestratorCluster.forServer(buildParam.getServerUrl());
+        cluster.startProbes();
+        OrchestratorCluster.Node node = cluster.nodeOf(executionUrl);
+        OrchestratorClient client = new OrchestratorClient(buildParam, node, true);
+        ExecutionLogTail logTail = console != null ? new ExecutionLogTail(client, executionUrl, console) : null;
+        Watch watch = new Watch(acquirePoller(node.getUrl()), node, client, executionUrl, logTail,
+                buildParam.getPollingStrategy(), buildParam.getWaitTimeoutMillis(), callback);
+        watchCount.incrementAndGet();
+        node.executionStarted();
+        OrchestratorMetrics.executionStarted(node.getUrl());
+        watch.schedule(0);
+        return watch;
+    }
+
+    /**
+     * Stops tracking an execution returned by {@link #watch} without cancelling it on the server, for an execution
+     * that another JVM keeps waiting for. The future then reports a cancellation.
+     */
+    public boolean detach(Future<ExecutionSnapshot> completion) {
+        return completion instanceof Watch && ((Watch) completion).stop("detached");
+    }
+
+    /**
+     * Returns the number of executions currently tracked.
+     */
+    public int getWatchCount() {
+        return watchCount.get();
+    }
+
+    /*
+     * Returns the poller of the server, retained for the caller until it calls release. A poller that was just shut
+     * down is replaced with a new one.
+     */
+    private ServerPoller acquirePoller(String serverUrl) {
+        while (true) {
+            ServerPoller poller = pollers.get(serverUrl);
+            if (poller == null) {
+                ServerPoller newPoller = new ServerPoller(serverUrl);
+                poller = pollers.putIfAbsent(serverUrl, newPoller);
+                if (poller == null) {
+                    poller = newPoller;
+                }
+            }
+            if (poller.retain()) {
+                return poller;
+            }
+            pollers.remove(serverUrl, poller);
+        }
+    }
+
+    private class Dispatcher implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Watch watch = queue.take();
+                    if (!watch.isDone()) {
+                        watch.poller.dispatch(watch);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to dispatch an execution poll", e);
+                }
+            }
+        }
+    }
+
+    /*
+     * Workers and poll budget of one server. Polls are spaced at least pollIntervalNanos apart: a due watch either
+     * gets the next slot right away or is queued again until its reserved slot comes up. Each watch and each pending
+     * cancel retains the poller, the last one to release it shuts the workers down.
+     */
+    private class ServerPoller {
+        private final String serverUrl;
+        private final ThreadPoolExecutor workers;
+        private final long pollIntervalNanos;
+        private long nextSlot;
+        private int users;
+        private boolean retired;
+
+        ServerPoller(String serverUrl) {
+            this.serverUrl = serverUrl;
+            workers = new ThreadPoolExecutor(WORKERS_PER_SERVER, WORKERS_PER_SERVER, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("vRO execution poller " + serverUrl));
+            workers.allowCoreThreadTimeOut(true);
+            pollIntervalNanos = MAX_POLLS_PER_SECOND > 0 ? TimeUnit.SECONDS.toNanos(1) / MAX_POLLS_PER_SECOND : 0;
+            nextSlot = System.nanoTime();
+        }
+
+        void dispatch(Watch watch) {
+            if (!watch.slotReserved) {
+                long wait = reserveSlot();
+                if (wait > 0) {
+                    watch.slotReserved = true;
+                    watch.scheduleNanos(wait);
+                    return;
+                }
+            }
+            watch.slotReserved = false;
+            execute(watch);
+        }
+
+        /*
+         * The workers only reject tasks of watches that completed while the task was handed over, those are dropped.
+         */
+        void execute(Runnable task) {
+            try {
+                workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                LOGGER.log(Level.FINE, "Dropped a task of a completed execution of {0}", serverUrl);
+            }
+        }
+
+        synchronized boolean retain() {
+            if (retired) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        void release() {
+            synchronized (this) {
+                if (--users > 0) {
+                    return;
+                }
+                retired = true;
+            }
+            pollers.remove(serverUrl, this);
+            workers.shutdown();
+        }
+
+        /*
+         * Charges requests sent besides the polls, such as log pages, to the poll budget, which delays the next polls.
+         */
+        synchronized void charge(int requests) {
+            long now = System.nanoTime();
+            long slot = nextSlot - now > 0 ? nextSlot : now;
+            nextSlot = slot + requests * pollIntervalNanos;
+        }
+
+        private synchronized long reserveSlot() {
+            long now = System.nanoTime();
+            long slot = nextSlot - now > 0 ? nextSlot : now;
+            nextSlot = slot + pollIntervalNanos;
+            return slot - now;
+        }
+    }
+
+    private class Watch implements Runnable, Delayed, Future<ExecutionSnapshot> {
+        private final ServerPoller poller;
+        private final OrchestratorCluster.Node node;
+        private final String serverUrl;
+        private final OrchestratorClient client;
+        private final String executionUrl;
+        private final ExecutionLogTail logTail;
+        private final PollingStrategy pollingStrategy;
+        private final long timeoutMillis;
+        private final long deadline;
+        private final long startedAt = System.nanoTime();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final FutureCallback<ExecutionSnapshot> callback;
+
+        private int poll;
+        private int deferredRetries;
+        private volatile int polls;
+        private volatile long nextPollAt;
+        private volatile boolean slotReserved;
+        private volatile ExecutionSnapshot result;
+        private volatile Throwable failure;
+        private volatile boolean cancelled;
+
+        Watch(ServerPoller poller, OrchestratorCluster.Node node, OrchestratorClient client, String executionUrl,
+              ExecutionLogTail logTail, PollingStrategy pollingStrategy, long timeoutMillis,
+              FutureCallback<ExecutionSnapshot> callback) {
+            this.poller = poller;
+            this.callback = callback;
+            this.node = node;
+            this.serverUrl = node.getUrl();
+            this.client = client;
+            this.executionUrl = executionUrl;
+            this.logTail = logTail;
+            this.pollingStrategy = pollingStrategy;
+            this.timeoutMillis = timeoutMillis;
+            this.deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        }
+
+        void schedule(long delayMillis) {
+            scheduleNanos(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+
+        void scheduleNanos(long delayNanos) {
+            if (!isDone()) {
+                nextPollAt = System.nanoTime() + delayNanos;
+                queue.put(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            polls++;
+            OrchestratorMetrics.recordPoll(serverUrl);
+            final long start = System.nanoTime();
+            if (ASYNC_POLLS) {
+                client.fetchExecutionSnapshotAsync(executionUrl, new FutureCallback<ExecutionSnapshot>() {
+                    @Override
+                    public void completed(final ExecutionSnapshot snapshot) {
+                        node.recordLatency(System.nanoTime() - start);
+                        if (logTail == null) {
+                            handle(snapshot);
+                            return;
+                        }
+                        //The log is read with the blocking client, off the I/O threads
+                        poller.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                handle(snapshot);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        handle(e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        //Requests are not cancelled by the monitor
+                    }
+                });
+                return;
+            }
+            ExecutionSnapshot snapshot;
+            try {
+                snapshot = client.fetchExecutionSnapshot(executionUrl);
+            } catch (Exception e) {
+                handle(e);
+                return;
+            }
+            node.recordLatency(System.nanoTime() - start);
+            handle(snapshot);
+        }
+
+        private void handle(ExecutionSnapshot snapshot) {
+            if (isDone()) {
+                return;
+            }
+            try {
+                if (logTail != null) {
+                    //Read after the state, so the log of a completed execution is copied in full
+                    poller.charge(logTail.poll());
+                }
+                deferredRetries = 0;
+                if (snapshot.isCompleted()) {
+                    complete(snapshot, null);
+                    return;
+                }
+                if (!timedOut()) {
+                    schedule(Math.min(pollingStrategy.getDelayMillis(poll++), deadline - System.currentTimeMillis()));
+                }
+            } catch (Exception e) {
+                handle(e);
+            }
+        }
+
+        private void handle(Exception e) {
+            if (e instanceof ServerUnavailableException) {
+                //The execution keeps running while the server's circuit breaker is open, poll again once it lets
+                //requests through
+                LOGGER.log(Level.FINE, "Delaying the poll of execution " + executionUrl, e);
+                if (!timedOut()) {
+                    schedule(Math.min(((ServerUnavailableException) e).getRetryAfterMillis(),
+                            deadline - System.currentTimeMillis()));
+                }
+                return;
+            }
+            if (e instanceof RetryLaterException && deferredRetries++ < RetryPolicy.getMaxRetries()) {
+                //The backoff waits in the queue, not in a worker shared with the other executions of the server
+                LOGGER.log(Level.FINE, "Retrying the poll of execution " + executionUrl, e);
+                if (!timedOut()) {
+                    schedule(Math.min(((RetryLaterException) e).getRetryAfterMillis(),
+                            deadline - System.currentTimeMillis()));
+                }
+                return;
+            }
+            LOGGER.log(Level.FINE, "Failed to poll execution " + executionUrl, e);
+            complete(null, e instanceof RetryLaterException && e.getCause() != null ? e.getCause() : e);
+        }
+
+        /*
+         * Fails the watch and cancels the execution on the server once the deadline has passed.
+         */
+        private boolean timedOut() {
+            if (deadline - System.currentTimeMillis() > 0) {
+                return false;
+            }
+            //Sent first, so that the cancel keeps the workers the watch releases
+            cancelOnServer();
+            complete(null, new IOException(String.format(
+                    "Workflow execution did not complete within %d minutes and is being canceled.",
+                    timeoutMillis / 60000)));
+            return true;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextPollAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long diff = nextPollAt - ((Watch) other).nextPollAt;
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+
+        private void complete(ExecutionSnapshot snapshot, Throwable throwable) {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                result = snapshot;
+                failure = throwable;
+                done.countDown();
+            }
+            finished(snapshot != null ? snapshot.getState() : "error");
+            if (callback == null) {
+                return;
+            }
+            if (snapshot != null) {
+                callback.completed(snapshot);
+            } else {
+                callback.failed(throwable instanceof Exception ? (Exception) throwable
+                        : new ExecutionException(throwable));
+            }
+        }
+
+        private void finished(String state) {
+            poller.release();
+            watchCount.decrementAndGet();
+            node.executionFinished();
+            OrchestratorMetrics.executionFinished(serverUrl, state, polls, System.nanoTime() - startedAt);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!stop("aborted")) {
+                return false;
+            }
+            cancelOnServer();
+            return true;
+        }
+
+        private boolean stop(String state) {
+            synchronized (this) {
+                if (isDone()) {
+                    return false;
+                }
+                cancelled = true;
+                done.countDown();
+            }
+            finished(state);
+            queue.remove(this);
+            if (callback != null) {
+                callback.cancelled();
+            }
+            return true;
+        }
+
+        private void cancelOnServer() {
+            cancelOnServer(0);
+        }
+
+        /*
+         * Runs on the server's workers, so that an aborting build does not wait for the server. Retries wait on the
+         * scheduler instead of a worker. The watch has released its poller by then, so the cancel retains one of its
+         * own.
+         */
+        private void cancelOnServer(final int retry) {
+            final ServerPoller canceller = acquirePoller(serverUrl);
+            canceller.workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (client.cancelExecution(executionUrl)) {
+                            LOGGER.log(Level.INFO, "Canceled workflow execution {0}", executionUrl);
+                        } else {
+                            LOGGER.log(Level.FINE, "Workflow execution {0} could not be canceled", executionUrl);
+                        }
+                    } catch (RetryLaterException e) {
+                        if (retry < RetryPolicy.getMaxRetries()) {
+                            RETRY_SCHEDULER.schedule(new Runnable() {
+                                @Override
+                                public void run() {
+                                    cancelOnServer(retry + 1);
+                                }
+                            }, e.getRetryAfterMillis(), TimeUnit.MILLISECONDS);
+                        } else {
+                            LOGGER.log(Level.WARNING, "Failed to cancel workflow execution " + executionUrl, e);
+                        }
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Failed to cancel workflow execution " + executionUrl, e);
+                    } finally {
+                        canceller.release();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public ExecutionSnapshot get() throws InterruptedException, ExecutionException {
+            done.await();
+            return getResult();
+        }
+
+        @Override
+        public ExecutionSnapshot get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        private ExecutionSnapshot getResult() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return result;
+        }
+    }
+}
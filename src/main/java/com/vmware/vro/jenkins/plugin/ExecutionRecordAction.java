@@ -0,0 +1,296 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.concurrent.FutureCallback;
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+import com.vmware.vro.jenkins.plugin.util.BackoffPollingStrategy;
+import com.vmware.vro.jenkins.plugin.util.CacheKeys;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Project;
+import hudson.model.Result;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+/**
+ * The workflow execution a build waits for, saved with the build as soon as the server accepts it so that it outlives
+ * a controller restart or the loss of the agent waiting for it.
+ * <p/>
+ * After a restart the controller watches the executions that were still running again and records their final state.
+ * The next build of the job with the same workflow and inputs then resumes waiting for the execution of the
+ * interrupted build, or reads the outputs of the completed execution from the server, instead of starting the
+ * workflow again. Only the execution url and state are saved, never the inputs or outputs, which may hold secrets
+ * and large values. Use the prefix
+ * {@code com.vmware.vro.jenkins.plugin.ExecutionRecordAction.} for the system properties.
+ */
+public class ExecutionRecordAction implements Action {
+    private static final Logger LOGGER = Logger.getLogger(ExecutionRecordAction.class.getName());
+
+    private static final String PROPERTY_PREFIX = ExecutionRecordAction.class.getName() + ".";
+
+    static final int MAX_RECOVERED_BUILDS = Integer.getInteger(PROPERTY_PREFIX + "maxRecoveredBuilds", 10);
+
+    static final String FAILED = "failed";
+    static final String CANCELED = "canceled";
+
+    //Saves the records of recovered executions as they end, off the threads of the monitor
+    private static final ExecutorService RECOVERY = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("vRO execution recovery"));
+
+    private final String serverUrl;
+    private final String userName;
+    private final String tenant;
+    private final String workflowId;
+    private final String inputDigest;
+    private String executionUrl;
+    private String state;
+    //The execution succeeded after the build stopped waiting for it
+    private boolean recovered;
+    private String resumedBy;
+
+    ExecutionRecordAction(BuildParam param) {
+        this.serverUrl = param.getServerUrl();
+        this.userName = param.getUserName();
+        this.tenant = param.getTenant();
+        this.workflowId = param.getWorkflowName();
+        this.inputDigest = digestOf(param.getInputParams());
+    }
+
+    /*
+     * Only a digest of the inputs is kept, they may hold secrets and large values.
+     */
+    private static String digestOf(List<Parameter> inputParams) {
+        StringBuilder inputs = new StringBuilder();
+        if (inputParams != null) {
+            for (Parameter parameter : inputParams) {
+                inputs.append(parameter.getName()).append('\u0000').append(parameter.getType()).append('\u0000')
+                        .append(parameter.getValue()).append('\u0001');
+            }
+        }
+        return CacheKeys.digest(inputs.toString());
+    }
+
+    public synchronized String getExecutionUrl() {
+        return executionUrl;
+    }
+
+    /**
+     * Returns the final state of the execution, or null while the build has not seen it end.
+     */
+    public synchronized String getState() {
+        return state;
+    }
+
+    /**
+     * Returns true if the execution was accepted by the server and its end was not recorded.
+     */
+    public synchronized boolean isInFlight() {
+        return executionUrl != null && state == null;
+    }
+
+    /**
+     * Returns a recorder that updates this record and saves the build on every change.
+     */
+    ExecutionRecorder recorderFor(final Run<?, ?> build) {
+        return new ExecutionRecorder() {
+            @Override
+            public void submitted(String url) {
+                synchronized (ExecutionRecordAction.this) {
+                    executionUrl = url;
+                }
+                save(build);
+            }
+
+            @Override
+            public void completed(String finalState) {
+                finish(build, finalState);
+            }
+
+            @Override
+            public boolean isShuttingDown() {
+                Jenkins jenkins = Jenkins.getInstance();
+                return jenkins != null && jenkins.isTerminating();
+            }
+        };
+    }
+
+    /**
+     * Records the end of the execution, unless it was already recorded.
+     */
+    void finish(Run<?, ?> build, String finalState) {
+        synchronized (this) {
+            if (state != null) {
+                return;
+            }
+            state = finalState;
+        }
+        save(build);
+    }
+
+    private synchronized boolean isResumableBy(BuildParam param) {
+        //Another user or tenant must not take over the execution or read its outputs
+        if (resumedBy != null || !serverUrl.equals(param.getServerUrl())
+                || !StringUtils.equals(userName, param.getUserName()) || !StringUtils.equals(tenant, param.getTenant())
+                || !workflowId.equals(param.getWorkflowName())
+                || !inputDigest.equals(digestOf(param.getInputParams()))) {
+            return false;
+        }
+        return isInFlight() || recovered;
+    }
+
+    /**
+     * Returns the record of the previous build of the job if the given build can take over its execution instead of
+     * starting the workflow again: the previous build ended without success while its execution of the same workflow
+     * with the same inputs, server, user and tenant was running, or before it succeeded. The record is marked as
+     * taken so that it is resumed once.
+     */
+    static ExecutionRecordAction claimResumable(AbstractBuild<?, ?> build, BuildParam param) {
+        Run<?, ?> previous = build.getPreviousBuild();
+        if (previous == null || previous.isBuilding() || previous.getResult() == Result.SUCCESS) {
+            return null;
+        }
+        ExecutionRecordAction record = previous.getAction(ExecutionRecordAction.class);
+        if (record == null) {
+            return null;
+        }
+        synchronized (record) {
+            if (!record.isResumableBy(param)) {
+                return null;
+            }
+            record.resumedBy = build.getExternalizableId();
+        }
+        save(previous);
+        return record;
+    }
+
+    /**
+     * Watches again the executions that builds interrupted by the last shutdown were waiting for, and records how
+     * they end.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void recoverExecutions() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+        for (AbstractProject<?, ?> project : jenkins.getAllItems(AbstractProject.class)) {
+            int scanned = 0;
+            for (Run<?, ?> build : project.getBuilds()) {
+                if (++scanned > MAX_RECOVERED_BUILDS) {
+                    break;
+                }
+                ExecutionRecordAction record = build.getAction(ExecutionRecordAction.class);
+                if (record != null && record.isInFlight() && !build.isBuilding()) {
+                    record.recover(project, build);
+                }
+            }
+        }
+    }
+
+    private void recover(AbstractProject<?, ?> project, final Run<?, ?> build) {
+        OrchestratorBuilder builder = findBuilder(project);
+        if (builder == null) {
+            LOGGER.log(Level.INFO, "Cannot recover the workflow execution {0} of {1}, its job no longer runs it",
+                    new Object[]{executionUrl, build.getFullDisplayName()});
+            return;
+        }
+        BuildParam param = new BuildParam(serverUrl, userName, builder.getPassword(), tenant, workflowId, true, null,
+                new BackoffPollingStrategy(builder.getPollInitialDelay() * 1000L, builder.getPollBackoffFactor(),
+                        builder.getPollMaxDelay() * 1000L),
+                builder.getWaitTimeout() * 60 * 1000L, null, builder.getRequestTimeout() * 1000);
+        LOGGER.log(Level.INFO, "Recovering the workflow execution {0} of {1}",
+                new Object[]{executionUrl, build.getFullDisplayName()});
+        ExecutionMonitor.getInstance().watch(param, executionUrl, new FutureCallback<ExecutionSnapshot>() {
+            @Override
+            public void completed(final ExecutionSnapshot snapshot) {
+                synchronized (ExecutionRecordAction.this) {
+                    recovered = snapshot.isSuccessful();
+                }
+                finishLater(build, snapshot.isSuccessful() ? snapshot.getState() : FAILED);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to recover the workflow execution " + executionUrl, e);
+                finishLater(build, FAILED);
+            }
+
+            @Override
+            public void cancelled() {
+                finishLater(build, CANCELED);
+            }
+        });
+    }
+
+    /*
+     * The record is saved with the build, which must not hold up the thread that completed the watch.
+     */
+    private void finishLater(final Run<?, ?> build, final String finalState) {
+        RECOVERY.execute(new Runnable() {
+            @Override
+            public void run() {
+                finish(build, finalState);
+            }
+        });
+    }
+
+    /*
+     * The builder of the job that holds the password of the server and user the execution was started with. Server
+     * urls and user names set by variables are not resolved, they match any record.
+     */
+    private OrchestratorBuilder findBuilder(AbstractProject<?, ?> project) {
+        if (!(project instanceof Project)) {
+            return null;
+        }
+        for (OrchestratorBuilder builder : ((Project<?, ?>) project).getBuildersList().getAll(
+                OrchestratorBuilder.class)) {
+            if (matches(builder.getServerUrl(), serverUrl) && matches(builder.getUserName(), userName)) {
+                return builder;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String configured, String resolved) {
+        return configured != null && (configured.indexOf('$') >= 0 || configured.trim().equals(resolved));
+    }
+
+    private static void save(Run<?, ?> build) {
+        try {
+            build.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the workflow execution record of " + build.getFullDisplayName(),
+                    e);
+        }
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
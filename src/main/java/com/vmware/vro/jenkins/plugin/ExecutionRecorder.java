@@ -0,0 +1,24 @@
+package com.vmware.vro.jenkins.plugin;
+
+/**
+ * Receives the progress of a workflow execution started for a build, so that the controller can record it even when
+ * the execution is started and waited for on an agent.
+ */
+public interface ExecutionRecorder {
+
+    /**
+     * Called once the server has accepted the execution, before waiting for it.
+     */
+    void submitted(String executionUrl);
+
+    /**
+     * Called when the wait for the execution ended with the given final state, or "failed" if it could not be known.
+     */
+    void completed(String state);
+
+    /**
+     * Returns true if the controller is shutting down. An interrupted wait then leaves the execution running, to be
+     * recovered once the controller is back.
+     */
+    boolean isShuttingDown();
+}
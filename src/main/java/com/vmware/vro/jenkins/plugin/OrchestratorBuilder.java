@@ -12,25 +12,40 @@ import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
 import com.vmware.vro.jenkins.plugin.model.Parameter;
 import com.vmware.vro.jenkins.plugin.model.Workflow;
+import com.vmware.vro.jenkins.plugin.model.WorkflowSchema;
+import com.vmware.vro.jenkins.plugin.payload.PayloadEncoder;
+import com.vmware.vro.jenkins.plugin.util.BackoffPollingStrategy;
 import com.vmware.vro.jenkins.plugin.util.EnvVariableResolver;
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.EnvironmentContributingAction;
+import hudson.model.Item;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 
 /**
  * Sample {@link Builder}.
@@ -47,6 +62,8 @@ import hudson.util.FormValidation;
  * @author Agila Govindaraju
  */
 public class OrchestratorBuilder extends Builder implements Serializable {
+    private static final String OUTPUT_DIR = ".vro-outputs";
+    static final String PRIORITY_VARIABLE = "ORCHESTRATOR_PRIORITY";
 
     private final String serverUrl;
     private final String userName;
@@ -54,9 +71,18 @@ public class OrchestratorBuilder extends Builder implements Serializable {
     private final String tenant;
     private final String workflowName;
     private final boolean waitExec;
+    private boolean waitOnController;
+    private boolean runOnController;
     private final List<Parameter> inputParams;
-
-    // Fields in config.jelly must match the parameter names in the "DataBoundConstructor"
+    private int pollInitialDelay;
+    private double pollBackoffFactor;
+    private int pollMaxDelay;
+    private int waitTimeout;
+    private int requestTimeout;
+    private transient volatile PayloadEncoder payloadEncoder;
+
+    // Fields in config.jelly must match the parameter names in the "DataBoundConstructor", optional settings are
+    // bound through their "DataBoundSetter"
     @DataBoundConstructor
     public OrchestratorBuilder(String serverUrl, String userName, String password, String tenant,
                                String workflowName,
@@ -78,18 +104,16 @@ public class OrchestratorBuilder extends Builder implements Serializable {
         EnvVariableResolver resolver = new EnvVariableResolver(build, listener);
 
         //Resolve the workflowName to workflowId
-        BuildParam buildParam = new BuildParam(serverUrl, userName, password, tenant, null);
-        OrchestratorClient client = new OrchestratorClient(buildParam);
+        BuildParam buildParam = new BuildParam(resolver.getValueForBuildParameter(serverUrl),
+                resolver.getValueForBuildParameter(userName), resolver.getValueForBuildParameter(password),
+                resolver.getValueForBuildParameter(tenant), null);
         String workflowId = null;
         try {
             String resolvedWfName = resolver.getValueForBuildParameter(workflowName);
 
-            List<Workflow> workflows = client.fetchWorkflows();
-            for (Workflow workflow : workflows) {
-                if (workflow.getName().equals(resolvedWfName)) {
-                    workflowId = workflow.getId();
-                    break;
-                }
+            Workflow workflow = WorkflowCatalogCache.findWorkflowByName(buildParam, resolvedWfName);
+            if (workflow != null) {
+                workflowId = workflow.getId();
             }
         } catch (Exception e) {
             throw new IOException(e.getMessage(), e);
@@ -99,30 +123,241 @@ public class OrchestratorBuilder extends Builder implements Serializable {
             throw new IOException("Workflow doesn't exist in the server.");
         }
 
-        BuildParam param = new BuildParam(resolver.getValueForBuildParameter(
+        BuildParam param = createBuildParam(resolver, workflowId, waitExec);
+        logger.println("Starting Orchestrator workflow execution : " + param.getWorkflowName());
+        param.validate();
+        validateInputParams(param);
+
+        FilePath workspace = build.getWorkspace();
+        FilePath outputDir = workspace != null ? workspace.child(OUTPUT_DIR) : null;
+        //The first Orchestrator step of a build drops the output files of earlier builds
+        if (build.getAction(OrchestratorEnvAction.class) == null) {
+            OutputVariables.clean(outputDir);
+        }
+        Map<String, String> outputParameters;
+        //Waiting builds record their execution, so that it can be resumed if the build does not see it end
+        ExecutionRecordAction previousRecord = null;
+        ExecutionRecordAction record = null;
+        ExecutionRecorder recorder = null;
+        if (waitExec) {
+            previousRecord = ExecutionRecordAction.claimResumable(build, param);
+            record = new ExecutionRecordAction(param);
+            build.addAction(record);
+            recorder = record.recorderFor(build);
+        }
+        AdmissionController.Permit permit = AdmissionController.getInstance().acquire(param.getServerUrl(),
+                getDescriptor().getAdmissionGroup(build), getPriority(resolver, logger), logger);
+        boolean ended = false;
+        try {
+            if (previousRecord != null) {
+                outputParameters = resume(previousRecord, param, outputDir, recorder, logger);
+            } else if (runOnController) {
+                outputParameters = executeOnController(param, outputDir, listener, recorder);
+            } else if (waitExec && waitOnController) {
+                outputParameters = executeAndWaitOnController(param, createBuildParam(resolver, workflowId, false),
+                        outputDir, launcher, listener, recorder);
+            } else {
+                outputParameters = executeOnAgent(param, outputDir, launcher, listener, record, recorder);
+            }
+            if (record != null) {
+                record.finish(build, outputParameters.get(OrchestratorCallable.ORCHESTRATOR_WORKFLOW_EXECUTION_STATE));
+            }
+            ended = true;
+        } catch (InterruptedException e) {
+            //An execution left running by a shutdown stays in flight, it is recovered after the restart
+            ended = recorder != null && recorder.isShuttingDown();
+            if (record != null && !ended) {
+                record.finish(build, ExecutionRecordAction.CANCELED);
+                ended = true;
+            }
+            throw e;
+        } finally {
+            permit.release();
+            //Any other failure, runtime errors included, must not leave the execution in flight for later builds
+            if (record != null && !ended) {
+                record.finish(build, ExecutionRecordAction.FAILED);
+            }
+        }
+
+        OrchestratorEnvAction orchestratorAction = new OrchestratorEnvAction(outputParameters);
+        build.addAction(orchestratorAction);
+
+        return true;
+    }
+
+    private BuildParam createBuildParam(EnvVariableResolver resolver, String workflowId, boolean wait) {
+        List<Parameter> resolvedInputParams = resolver.getValueForBuildParameter(inputParams);
+        return new BuildParam(resolver.getValueForBuildParameter(
                 serverUrl), resolver.getValueForBuildParameter(userName),
                 resolver.getValueForBuildParameter(password),
                 resolver.getValueForBuildParameter(tenant),
                 workflowId,
-                waitExec, resolver.getValueForBuildParameter(inputParams)
+                wait, resolvedInputParams,
+                new BackoffPollingStrategy(getPollInitialDelay() * 1000L, getPollBackoffFactor(),
+                        getPollMaxDelay() * 1000L),
+                getWaitTimeout() * 60 * 1000L,
+                getPayloadEncoder(resolvedInputParams),
+                getRequestTimeout() * 1000
         );
-        logger.println("Starting Orchestrator workflow execution : " + param.getWorkflowName());
-        param.validate();
+    }
 
-        OrchestratorCallable callable = new OrchestratorCallable(param);
-        Map<String, String> outputParameters = launcher.getChannel().call(callable);
+    /*
+     * The admission priority of the build, from the ORCHESTRATOR_PRIORITY parameter or environment variable.
+     */
+    private static int getPriority(EnvVariableResolver resolver, PrintStream logger) {
+        String priority = Util.fixEmptyAndTrim(resolver.getEnvironment().get(PRIORITY_VARIABLE));
+        if (priority == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(priority);
+        } catch (NumberFormatException e) {
+            logger.println("Ignoring " + PRIORITY_VARIABLE + " " + priority + ", it is not a whole number.");
+            return 0;
+        }
+    }
 
-        if (outputParameters != null && outputParameters.size() > 0) {
-            logger.println("Output Parameters from the workflow execution");
-            for (Map.Entry entry : outputParameters.entrySet()) {
-                logger.println(entry.getKey() + " : " + entry.getValue());
+    /*
+     * Fails the build before submission if a configured parameter is not an input of the workflow, which the server
+     * would otherwise ignore. The cached schema is reloaded once in case the workflow changed since it was cached.
+     */
+    private void validateInputParams(BuildParam param) throws IOException {
+        List<Parameter> params = param.getInputParams();
+        if (params == null || params.isEmpty()) {
+            return;
+        }
+        WorkflowSchema schema = WorkflowSchemaCache.getSchema(param);
+        boolean reloaded = false;
+        for (Parameter parameter : params) {
+            if (!schema.hasInput(parameter.getName()) && !reloaded) {
+                schema = WorkflowSchemaCache.reload(param);
+                reloaded = true;
+            }
+            if (!schema.hasInput(parameter.getName())) {
+                throw new IOException("Workflow has no input parameter " + parameter.getName()
+                        + ". Its input parameters are " + schema.getInputKeys());
             }
         }
+    }
 
-        OrchestratorEnvAction orchestratorAction = new OrchestratorEnvAction(outputParameters);
-        build.addAction(orchestratorAction);
+    /*
+     * The encoder is compiled once per job configuration, as a saved configuration creates a new builder. It is
+     * compiled again only if parameter names resolve differently from one build to the next.
+     */
+    private PayloadEncoder getPayloadEncoder(List<Parameter> resolvedInputParams) {
+        PayloadEncoder encoder = payloadEncoder;
+        if (encoder == null || !encoder.isCompiledFor(resolvedInputParams)) {
+            encoder = PayloadEncoder.compile(resolvedInputParams);
+            payloadEncoder = encoder;
+        }
+        return encoder;
+    }
 
-        return true;
+    /*
+     * Starts and waits for the workflow from the controller, with its warm connection pools, token cache and
+     * ExecutionMonitor, instead of shipping the callable to the build's node.
+     */
+    private Map<String, String> executeOnController(BuildParam param, FilePath outputDir, BuildListener listener,
+                                                    ExecutionRecorder recorder)
+            throws IOException, InterruptedException {
+        try {
+            return new OrchestratorCallable(param, outputDir, listener, recorder).call();
+        } catch (IOException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                //Let Jenkins mark the build as aborted rather than failed
+                throw (InterruptedException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Starts the workflow through the build's channel without waiting, then waits for it on the controller, where
+     * the shared ExecutionMonitor polls it. The agent and its remoting thread are released right after submission.
+     */
+    private Map<String, String> executeAndWaitOnController(BuildParam param, BuildParam submitParam,
+                                                           FilePath outputDir, Launcher launcher,
+                                                           BuildListener listener, ExecutionRecorder recorder)
+            throws IOException, InterruptedException {
+        Map<String, String> data = launcher.getChannel().call(new OrchestratorCallable(submitParam, null, listener));
+        String executionUrl = data.get(OrchestratorCallable.ORCHESTRATOR_WORKFLOW_EXECUTION_URL);
+        recorder.submitted(executionUrl);
+        listener.getLogger().println("Waiting on the controller for the workflow execution : " + executionUrl);
+        return waitOnController(param, executionUrl, outputDir, recorder, listener.getLogger());
+    }
+
+    /*
+     * Starts and waits for the workflow on the build's node. If the node is lost while the controller knows the
+     * execution it was waiting for, the controller waits for it instead. Output values are then kept in the variables
+     * as the node's workspace is gone.
+     */
+    private Map<String, String> executeOnAgent(BuildParam param, FilePath outputDir, Launcher launcher,
+                                               BuildListener listener, ExecutionRecordAction record,
+                                               ExecutionRecorder recorder)
+            throws IOException, InterruptedException {
+        VirtualChannel channel = launcher.getChannel();
+        ExecutionRecorder exported = recorder != null ? channel.export(ExecutionRecorder.class, recorder) : null;
+        try {
+            return channel.call(new OrchestratorCallable(param, outputDir, listener, exported));
+        } catch (IOException e) {
+            if (record == null || !record.isInFlight()) {
+                throw e;
+            }
+            String executionUrl = record.getExecutionUrl();
+            listener.getLogger().println("Lost the build's node while it waited, waiting on the controller for the "
+                    + "workflow execution : " + executionUrl);
+            return waitOnController(param, executionUrl, null, recorder, listener.getLogger());
+        }
+    }
+
+    /*
+     * Takes over the execution of the previous build instead of starting the workflow again, or reuses its outputs if
+     * it completed after that build ended.
+     */
+    private Map<String, String> resume(ExecutionRecordAction previousRecord, BuildParam param, FilePath outputDir,
+                                       ExecutionRecorder recorder, PrintStream logger)
+            throws IOException, InterruptedException {
+        String executionUrl = previousRecord.getExecutionUrl();
+        recorder.submitted(executionUrl);
+        if (previousRecord.isInFlight()) {
+            logger.println("Resuming the wait for the workflow execution of the previous build : " + executionUrl);
+        } else {
+            //The outputs are not saved with the record, the completed execution is read again
+            logger.println("Reading the outputs of the workflow execution of the previous build, which completed "
+                    + "after it ended : " + executionUrl);
+        }
+        return waitOnController(param, executionUrl, outputDir, recorder, logger);
+    }
+
+    /*
+     * Waits for the execution from the shared ExecutionMonitor of the controller and collects its outputs.
+     */
+    private Map<String, String> waitOnController(BuildParam param, String executionUrl, FilePath outputDir,
+                                                 ExecutionRecorder recorder, PrintStream logger)
+            throws IOException, InterruptedException {
+        Map<String, String> data = new HashMap<String, String>();
+        data.put(OrchestratorCallable.ORCHESTRATOR_WORKFLOW_EXECUTION_URL, executionUrl);
+        Future<ExecutionSnapshot> completion = ExecutionMonitor.getInstance().watch(param, executionUrl, logger);
+        try {
+            ExecutionSnapshot snapshot = completion.get();
+            recorder.completed(snapshot.getState());
+            OrchestratorCallable.collectExecutionOutput(snapshot, outputDir, data, logger);
+        } catch (InterruptedException e) {
+            if (recorder.isShuttingDown()) {
+                //Leave the execution running, it is recovered after the restart
+                ExecutionMonitor.getInstance().detach(completion);
+            } else {
+                completion.cancel(true);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return data;
     }
 
     public String getServerUrl() {
@@ -145,6 +380,24 @@ public class OrchestratorBuilder extends Builder implements Serializable {
         return waitExec;
     }
 
+    public boolean isWaitOnController() {
+        return waitOnController;
+    }
+
+    @DataBoundSetter
+    public void setWaitOnController(boolean waitOnController) {
+        this.waitOnController = waitOnController;
+    }
+
+    public boolean isRunOnController() {
+        return runOnController;
+    }
+
+    @DataBoundSetter
+    public void setRunOnController(boolean runOnController) {
+        this.runOnController = runOnController;
+    }
+
     public List<Parameter> getInputParams() {
         return inputParams;
     }
@@ -153,6 +406,54 @@ public class OrchestratorBuilder extends Builder implements Serializable {
         return tenant;
     }
 
+    /*
+     * The polling settings fall back to their defaults for jobs configured before they existed.
+     */
+    public int getPollInitialDelay() {
+        return pollInitialDelay > 0 ? pollInitialDelay : BackoffPollingStrategy.DEFAULT_INITIAL_DELAY_SECONDS;
+    }
+
+    @DataBoundSetter
+    public void setPollInitialDelay(int pollInitialDelay) {
+        this.pollInitialDelay = pollInitialDelay;
+    }
+
+    public double getPollBackoffFactor() {
+        return pollBackoffFactor >= 1 ? pollBackoffFactor : BackoffPollingStrategy.DEFAULT_FACTOR;
+    }
+
+    @DataBoundSetter
+    public void setPollBackoffFactor(double pollBackoffFactor) {
+        this.pollBackoffFactor = pollBackoffFactor;
+    }
+
+    public int getPollMaxDelay() {
+        return pollMaxDelay > 0 ? pollMaxDelay : BackoffPollingStrategy.DEFAULT_MAX_DELAY_SECONDS;
+    }
+
+    @DataBoundSetter
+    public void setPollMaxDelay(int pollMaxDelay) {
+        this.pollMaxDelay = pollMaxDelay;
+    }
+
+    public int getWaitTimeout() {
+        return Math.max(waitTimeout, 0);
+    }
+
+    @DataBoundSetter
+    public void setWaitTimeout(int waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+
+    public int getRequestTimeout() {
+        return Math.max(requestTimeout, 0);
+    }
+
+    @DataBoundSetter
+    public void setRequestTimeout(int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -160,8 +461,105 @@ public class OrchestratorBuilder extends Builder implements Serializable {
 
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+        static final String FAIRNESS_JOB = "job";
+        static final String FAIRNESS_FOLDER = "folder";
+
+        //Controller-wide admission settings of every Orchestrator server, 0 means no limit
+        private int maxRunningExecutions;
+        private int maxSubmissionsPerMinute;
+        private int submissionBurst;
+        private String queueFairness;
+
         public DescriptorImpl() {
             load();
+            applyAdmissionLimits();
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            save();
+            applyAdmissionLimits();
+            return true;
+        }
+
+        private void applyAdmissionLimits() {
+            AdmissionController.getInstance().setLimits(maxRunningExecutions, maxSubmissionsPerMinute,
+                    getSubmissionBurst());
+        }
+
+        /**
+         * Returns the group a build takes turns with in the admission queue: its job, or the folder of its job.
+         */
+        String getAdmissionGroup(AbstractBuild<?, ?> build) {
+            AbstractProject<?, ?> project = build.getProject();
+            if (FAIRNESS_FOLDER.equals(getQueueFairness())) {
+                return project.getParent().getFullName();
+            }
+            return project.getFullName();
+        }
+
+        public int getMaxRunningExecutions() {
+            return maxRunningExecutions;
+        }
+
+        public void setMaxRunningExecutions(int maxRunningExecutions) {
+            this.maxRunningExecutions = Math.max(maxRunningExecutions, 0);
+        }
+
+        public int getMaxSubmissionsPerMinute() {
+            return maxSubmissionsPerMinute;
+        }
+
+        public void setMaxSubmissionsPerMinute(int maxSubmissionsPerMinute) {
+            this.maxSubmissionsPerMinute = Math.max(maxSubmissionsPerMinute, 0);
+        }
+
+        /*
+         * The burst falls back to one submission, each one spaced by the rate, when it is not set.
+         */
+        public int getSubmissionBurst() {
+            return submissionBurst > 0 ? submissionBurst : 1;
+        }
+
+        public void setSubmissionBurst(int submissionBurst) {
+            this.submissionBurst = submissionBurst;
+        }
+
+        public String getQueueFairness() {
+            return FAIRNESS_FOLDER.equals(queueFairness) ? FAIRNESS_FOLDER : FAIRNESS_JOB;
+        }
+
+        public void setQueueFairness(String queueFairness) {
+            this.queueFairness = queueFairness;
+        }
+
+        public ListBoxModel doFillQueueFairnessItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Job", FAIRNESS_JOB);
+            items.add("Folder", FAIRNESS_FOLDER);
+            return items;
+        }
+
+        public FormValidation doCheckMaxRunningExecutions(@QueryParameter final int value) {
+            if (value < 0) {
+                return FormValidation.error("Please enter 0 for no limit or a number of executions.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckMaxSubmissionsPerMinute(@QueryParameter final int value) {
+            if (value < 0) {
+                return FormValidation.error("Please enter 0 for no limit or a number of submissions.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckSubmissionBurst(@QueryParameter final int value) {
+            if (value <= 0) {
+                return FormValidation.error("Please enter a burst of at least one submission.");
+            }
+            return FormValidation.ok();
         }
 
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
@@ -189,12 +587,15 @@ public class OrchestratorBuilder extends Builder implements Serializable {
                 return FormValidation.ok();
             }
 
-            try {
-                new URL(value).toURI();
-            } catch (MalformedURLException e) {
-                return FormValidation.error("This is not a valid URI");
-            } catch (URISyntaxException e) {
-                return FormValidation.error("This is not a valid URI");
+            //A cluster is given as the urls of its nodes
+            for (String nodeUrl : OrchestratorCluster.parseNodeUrls(url)) {
+                try {
+                    new URL(nodeUrl).toURI();
+                } catch (MalformedURLException e) {
+                    return FormValidation.error("This is not a valid URI");
+                } catch (URISyntaxException e) {
+                    return FormValidation.error("This is not a valid URI");
+                }
             }
 
             return FormValidation.ok();
@@ -250,17 +651,66 @@ public class OrchestratorBuilder extends Builder implements Serializable {
             }
             //Call server and validate
             BuildParam buildParam = new BuildParam(serverUrl, userName, password, tenant, null);
-            OrchestratorClient client = new OrchestratorClient(buildParam);
-            List<Workflow> workflows = client.fetchWorkflows();
+            Workflow workflow = WorkflowCatalogCache.findWorkflowByName(buildParam, workflowName);
+            if (workflow == null) {
+                return FormValidation.error("Workflow with the given name doesn't exist in the server.");
+            }
+            //The parameter rows are filled next, let them find the input parameters cached
+            WorkflowSchemaCache.prefetch(new BuildParam(serverUrl, userName, password, tenant, workflow.getId()));
+            return FormValidation.ok();
+        }
 
-            boolean isWorkflowFound = false;
-            for (Workflow workflow : workflows) {
-                if (workflow.getName().equals(workflowName)) {
-                    isWorkflowFound = true;
-                }
+        /*
+         * Clearing the caches makes every build reload the catalogs, so only users configuring jobs may do it.
+         */
+        @RequirePOST
+        public FormValidation doInvalidateWorkflowCache(@AncestorInPath final Item item,
+                                                        @QueryParameter final String serverUrl) {
+            if (item != null) {
+                item.checkPermission(Item.CONFIGURE);
+            } else {
+                Jenkins.getInstance().checkPermission(Item.CONFIGURE);
             }
-            if (!isWorkflowFound) {
-                return FormValidation.error("Workflow with the given name doesn't exist in the server.");
+            String url = Util.fixEmptyAndTrim(serverUrl);
+            if (url == null) {
+                return FormValidation.error("Please enter Orchestrator server URL.");
+            }
+            WorkflowCatalogCache.invalidate(url);
+            WorkflowSchemaCache.invalidate(url);
+            return FormValidation.ok("Cached workflows of the server are cleared.");
+        }
+
+        public FormValidation doCheckPollInitialDelay(@QueryParameter final int value) {
+            if (value <= 0) {
+                return FormValidation.error("Please enter a delay of at least one second.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckPollBackoffFactor(@QueryParameter final double value) {
+            if (value < 1) {
+                return FormValidation.error("Please enter a factor of at least 1.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckPollMaxDelay(@QueryParameter final int value) {
+            if (value <= 0) {
+                return FormValidation.error("Please enter a delay of at least one second.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckWaitTimeout(@QueryParameter final int value) {
+            if (value < 0) {
+                return FormValidation.error("Please enter 0 to wait without limit or a number of minutes.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckRequestTimeout(@QueryParameter final int value) {
+            if (value < 0) {
+                return FormValidation.error("Please enter 0 to use the default timeouts or a number of seconds.");
             }
             return FormValidation.ok();
         }
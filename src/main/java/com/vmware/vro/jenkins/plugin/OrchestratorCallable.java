@@ -1,73 +1,186 @@
 package com.vmware.vro.jenkins.plugin;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.jenkinsci.remoting.RoleChecker;
 import com.vmware.vro.jenkins.plugin.model.BuildParam;
-import com.vmware.vro.jenkins.plugin.model.ExecutionOutput;
-import com.vmware.vro.jenkins.plugin.model.ExecutionState;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+import hudson.FilePath;
+import hudson.model.TaskListener;
 import hudson.remoting.Callable;
+import hudson.remoting.Channel;
 
 /**
  * Created by agovindaraju on 1/9/2016.
  */
 public class OrchestratorCallable implements Callable<Map<String, String>, IOException>, Serializable {
     private final BuildParam buildParam;
-    private static final String ORCHESTRATOR_WORKFLOW_EXECUTION_STATE = "ORCHESTRATOR_WORKFLOW_EXECUTION_STATE";
-    private static final String ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT = "ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT";
+    private final FilePath outputDir;
+    private final TaskListener listener;
+    private final ExecutionRecorder recorder;
+    static final String ORCHESTRATOR_WORKFLOW_EXECUTION_URL = "ORCHESTRATOR_WORKFLOW_EXECUTION_URL";
+    static final String ORCHESTRATOR_WORKFLOW_EXECUTION_STATE = "ORCHESTRATOR_WORKFLOW_EXECUTION_STATE";
+    static final String ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT = "ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT";
 
     public OrchestratorCallable(BuildParam buildParam) {
+        this(buildParam, null, null);
+    }
+
+    /**
+     * Creates a callable that reports its progress and the execution log to the build's listener, and writes output
+     * values too large for an environment variable to the given directory. Both may be null.
+     */
+    public OrchestratorCallable(BuildParam buildParam, FilePath outputDir, TaskListener listener) {
+        this(buildParam, outputDir, listener, null);
+    }
+
+    /**
+     * Creates a callable that also reports the execution it waits for to the given recorder, exported to the agent
+     * when the callable runs there. The execution is then left running if the connection to the controller is lost,
+     * as the controller keeps track of it.
+     */
+    public OrchestratorCallable(BuildParam buildParam, FilePath outputDir, TaskListener listener,
+                                ExecutionRecorder recorder) {
         this.buildParam = buildParam;
+        this.outputDir = outputDir;
+        this.listener = listener;
+        this.recorder = recorder;
     }
 
     @Override
     public Map<String, String> call() throws IOException {
         Map<String, String> data = new HashMap<String, String>();
+        PrintStream console = listener != null ? listener.getLogger() : null;
         try {
             OrchestratorClient client = new OrchestratorClient(buildParam);
             String executeResponseUrl = client.executeWorkflow();
-            System.out.println(String.format(
+            log(console, String.format(
                     "Invoked execute of workflow in the orchestrator server %s resulted in the execution %s",
                     buildParam.getServerUrl(), executeResponseUrl));
             if (executeResponseUrl != null) {
+                data.put(ORCHESTRATOR_WORKFLOW_EXECUTION_URL, executeResponseUrl);
                 if (buildParam.isWaitExec()) {
-                    //Now wait till the workflow is completed
-                    System.out.println(
-                            "Build is marked and wait till execution is complete. Hence checking the status of " +
-                                    "workflow."
-                    );
-                    ExecutionState executionState = client.fetchWorkflowState(executeResponseUrl);
-                    System.out.println(String.format("Currently workflow is in %s state", executionState.getState()));
-                    while (!executionState.isCompleted()) {
-                        Thread.sleep(10 * 1000);
-                        executionState = client.fetchWorkflowState(executeResponseUrl);
-                        System.out
-                                .println(String.format("Currently workflow is in %s state", executionState.getState()));
-                    }
-                    if (executionState.getState().equalsIgnoreCase("canceled") || executionState.getState()
-                            .equalsIgnoreCase("failed")) {
-                        throw new IOException("Workflow execution failed.");
+                    if (recorder != null) {
+                        try {
+                            recorder.submitted(executeResponseUrl);
+                        } catch (RuntimeException e) {
+                            log(console, "Failed to record the workflow execution on the controller : " + e);
+                        }
                     }
-                    ExecutionOutput executionOutput = client.fetchWorkflowOutputParameters(executeResponseUrl);
-                    System.out.print(String
-                            .format("Workflow completed execution with %s state", executionOutput.getState()));
-                    data.put(ORCHESTRATOR_WORKFLOW_EXECUTION_STATE, executionOutput.getState());
-                    data.put(ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT, executionOutput.getParameters());
+                    //Now wait till the workflow is completed
+                    log(console, "Waiting for the workflow execution to complete.");
+                    ExecutionSnapshot snapshot = waitForCompletion(executeResponseUrl, console);
+                    collectExecutionOutput(snapshot, outputDir, data, console);
                 }
             } else {
-                System.out.println("System error in execution of workflow.");
                 throw new IOException("Workflow execution failed.");
             }
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            e.printStackTrace();
             throw new IOException(e.getMessage(), e);
         }
         return data;
     }
 
+    /*
+     * Waits through the monitor of this JVM, which shares its poll threads and budget with every other build waiting
+     * here. The execution is canceled if the build is aborted, or if this runs on an agent that loses its connection
+     * to the controller, unless the controller records it and can wait for it in the agent's place.
+     */
+    private ExecutionSnapshot waitForCompletion(String executionUrl, PrintStream console) throws Exception {
+        final Future<ExecutionSnapshot> completion = ExecutionMonitor.getInstance().watch(buildParam, executionUrl,
+                console);
+        Channel channel = Channel.current();
+        Channel.Listener cancelOnClose = new Channel.Listener() {
+            @Override
+            public void onClosed(Channel closedChannel, IOException cause) {
+                if (recorder != null) {
+                    ExecutionMonitor.getInstance().detach(completion);
+                } else {
+                    completion.cancel(true);
+                }
+            }
+        };
+        if (channel != null) {
+            channel.addListener(cancelOnClose);
+        }
+        try {
+            ExecutionSnapshot snapshot = completion.get();
+            reportCompleted(snapshot.getState(), console);
+            return snapshot;
+        } catch (InterruptedException e) {
+            if (recorder != null && isShuttingDown()) {
+                log(console, "Controller shutting down, leaving the workflow execution " + executionUrl + " running");
+                ExecutionMonitor.getInstance().detach(completion);
+            } else {
+                log(console, "Build aborted, canceling the workflow execution " + executionUrl);
+                completion.cancel(true);
+                reportCompleted(ExecutionRecordAction.CANCELED, console);
+            }
+            throw e;
+        } catch (CancellationException e) {
+            throw new IOException(recorder != null
+                    ? "Stopped waiting for the workflow execution as the connection to the controller was lost."
+                    : "Workflow execution was canceled as the connection to the controller was lost.");
+        } catch (ExecutionException e) {
+            reportCompleted(ExecutionRecordAction.FAILED, console);
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            if (channel != null) {
+                channel.removeListener(cancelOnClose);
+            }
+        }
+    }
+
+    private void reportCompleted(String state, PrintStream console) {
+        if (recorder != null) {
+            try {
+                recorder.completed(state);
+            } catch (RuntimeException e) {
+                log(console, "Failed to record the end of the workflow execution on the controller : " + e);
+            }
+        }
+    }
+
+    private boolean isShuttingDown() {
+        try {
+            return recorder.isShuttingDown();
+        } catch (RuntimeException e) {
+            //The controller is already gone
+            return true;
+        }
+    }
+
+    /**
+     * Fails if the completed execution did not succeed, otherwise adds its state and output parameters to the data.
+     * Output values too large for an environment variable are written to the output directory if one is given.
+     */
+    static void collectExecutionOutput(ExecutionSnapshot snapshot, FilePath outputDir, Map<String, String> data,
+                                       PrintStream console) throws IOException, InterruptedException {
+        if (!snapshot.isSuccessful()) {
+            throw new IOException(snapshot.getError() != null
+                    ? "Workflow execution failed : " + snapshot.getError() : "Workflow execution failed.");
+        }
+        log(console, String.format("Workflow completed execution with %s state", snapshot.getState()));
+        data.put(ORCHESTRATOR_WORKFLOW_EXECUTION_STATE, snapshot.getState());
+        OutputVariables.collect(snapshot, outputDir, data, console);
+    }
+
+    private static void log(PrintStream console, String message) {
+        if (console != null) {
+            console.println(message);
+        }
+    }
+
     @Override
     public void checkRoles(RoleChecker roleChecker) throws SecurityException {
 
@@ -1,6 +1,8 @@
 package com.vmware.vro.jenkins.plugin;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
@@ -8,20 +10,47 @@ import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.concurrent.FutureCallback;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.ExecutionLogEntry;
 import com.vmware.vro.jenkins.plugin.model.ExecutionOutput;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
 import com.vmware.vro.jenkins.plugin.model.ExecutionState;
+import com.vmware.vro.jenkins.plugin.model.OutputParameter;
 import com.vmware.vro.jenkins.plugin.model.Parameter;
 import com.vmware.vro.jenkins.plugin.model.Workflow;
+import com.vmware.vro.jenkins.plugin.payload.PayloadEncoder;
+import com.vmware.vro.jenkins.plugin.payload.PayloadEntity;
+import com.vmware.vro.jenkins.plugin.util.AsyncRestClient;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import com.vmware.vro.jenkins.plugin.util.JsonStreams;
+import com.vmware.vro.jenkins.plugin.util.OrchestratorMetrics;
+import com.vmware.vro.jenkins.plugin.util.ResponseReader;
 import com.vmware.vro.jenkins.plugin.util.RestClient;
+import com.vmware.vro.jenkins.plugin.util.RetryLaterException;
+import com.vmware.vro.jenkins.plugin.util.RetryPolicy;
 
 /**
  * OrchestratorClient helps to execute rest APIs on the orchestrator server.
@@ -29,6 +58,8 @@ import com.vmware.vro.jenkins.plugin.util.RestClient;
  * Created by agovindaraju on 1/9/2016.
  */
 public class OrchestratorClient {
+    private static final Logger LOGGER = Logger.getLogger(OrchestratorClient.class.getName());
+
     private static final String WORKFLOWS_SERVICE = "%s/vco/api/workflows";
     private static final String WORKFLOW_SERVICE = "%s/vco/api/workflows/%s";
     private static final String WORKFLOW_EXECUTION_SERVICE = "%s/vco/api/workflows/%s/executions/";
@@ -40,19 +71,89 @@ public class OrchestratorClient {
     private static final String TYPE = "type";
     private static final String VALUE = "value";
     private static final String ID = "id";
-    private static final String SDK_OBJECT = "sdk-object";
-    private static final String PARAMETERS = "parameters";
     private static final String STATE = "state";
     private static final String LINK = "link";
     private static final String ATTRIBUTES = "attributes";
+    private static final String TOTAL = "total";
+    private static final String START_DATE = "start-date";
+    private static final String END_DATE = "end-date";
+    private static final String CONTENT_EXCEPTION = "content-exception";
+    private static final String LOGS = "logs";
+    private static final String ENTRY = "entry";
+    private static final String TIME_STAMP = "time-stamp";
+    private static final String TIME_STAMP_VAL = "time-stamp-val";
+    private static final String SEVERITY = "severity";
+    private static final String SHORT_DESCRIPTION = "short-description";
+    private static final String LONG_DESCRIPTION = "long-description";
+    private static final String LOG_SORT_ORDER = "+timestamp";
+
+    private static final String PROPERTY_PREFIX = OrchestratorClient.class.getName() + ".";
+    static final int PAGE_SIZE = Integer.getInteger(PROPERTY_PREFIX + "pageSize", 500);
+    static final int MAX_PARALLEL_PAGES = Integer.getInteger(PROPERTY_PREFIX + "maxParallelPages", 4);
+    private static final int NAME_QUERY_MAX_RESULT = 20;
+
+    private static final ThreadPoolExecutor PAGE_FETCHER = new ThreadPoolExecutor(MAX_PARALLEL_PAGES,
+            MAX_PARALLEL_PAGES, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new DaemonThreadFactory("vRO workflow page fetcher"));
+
+    static {
+        PAGE_FETCHER.allowCoreThreadTimeOut(true);
+    }
 
     private final BuildParam buildParam;
+    private final OrchestratorCluster cluster;
+    private final OrchestratorCluster.Node node;
+    private final String serverUrl;
+    private final boolean deferRetries;
     private final RestClient restClient;
+    //Created on the first async request, most clients never send one
+    private AsyncRestClient asyncRestClient;
 
+    /**
+     * Creates a client for the server of the build param. When it lists several cluster nodes, the client sends its
+     * requests to the node selected by {@link OrchestratorCluster#select()}.
+     */
     public OrchestratorClient(BuildParam buildParam) {
+        this(buildParam, OrchestratorCluster.forServer(buildParam.getServerUrl()).select());
+    }
+
+    /**
+     * Creates a client that sends its requests to the given node of the server's cluster.
+     */
+    OrchestratorClient(BuildParam buildParam, OrchestratorCluster.Node node) {
+        this(buildParam, node, false);
+    }
+
+    /**
+     * Creates a client for the given node whose requests throw a {@link RetryLaterException} instead of waiting
+     * for a retry when deferRetries is set.
+     */
+    OrchestratorClient(BuildParam buildParam, OrchestratorCluster.Node node, boolean deferRetries) {
         this.buildParam = buildParam;
-        this.restClient = new RestClient(buildParam.getServerUrl(), buildParam.getUserName(), buildParam.getPassword(),
-                buildParam.getTenant());
+        this.deferRetries = deferRetries;
+        this.cluster = OrchestratorCluster.forServer(buildParam.getServerUrl());
+        this.node = node;
+        this.serverUrl = node.getUrl();
+        this.restClient = createRestClient(serverUrl);
+    }
+
+    private RestClient createRestClient(String nodeUrl) {
+        return new RestClient(nodeUrl, buildParam.getUserName(), buildParam.getPassword(), buildParam.getTenant(),
+                buildParam.getRequestTimeoutMillis(), deferRetries);
+    }
+
+    /**
+     * Receives workflows as they are parsed from the server response.
+     */
+    public interface WorkflowHandler {
+        void handle(Workflow workflow);
+    }
+
+    /**
+     * Receives execution log entries as they are parsed from the server response.
+     */
+    public interface LogEntryHandler {
+        void handle(ExecutionLogEntry entry);
     }
 
     /**
@@ -61,35 +162,217 @@ public class OrchestratorClient {
     public List<Workflow> fetchWorkflows()
             throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
             IOException {
-        List<Workflow> workflows = new ArrayList<Workflow>();
-        String requestUrl = String.format(WORKFLOWS_SERVICE, buildParam.getServerUrl());
-        String workflowsResponse = restClient.httpGet(requestUrl);
-        JsonObject workflowsJson = getJsonObject(workflowsResponse);
-        if (workflowsJson.has(LINK)) {
-            JsonArray jsonArray = workflowsJson.getAsJsonArray(LINK);
-            for (int i = 0; i < jsonArray.size(); i++) {
-                JsonObject workflowJson = jsonArray.get(i).getAsJsonObject();
-                if (workflowJson.has(ATTRIBUTES)) {
-                    JsonArray attrJsonArray = workflowJson.getAsJsonArray(ATTRIBUTES);
-                    Workflow workflow = new Workflow();
-                    for (int j = 0; j < attrJsonArray.size(); j++) {
-                        JsonObject jsonObject = attrJsonArray.get(j).getAsJsonObject();
-                        String name = jsonObject.get(NAME).getAsString();
-                        String value = null;
-                        if (jsonObject.has(VALUE)) {
-                            value = jsonObject.get(VALUE).getAsString();
-                        }
-                        if (NAME.equals(name)) {
-                            workflow.setName(value);
-                        } else if (ID.equals(name)) {
-                            workflow.setId(value);
+        final List<Workflow> workflows = new ArrayList<Workflow>();
+        fetchWorkflows(new WorkflowHandler() {
+            @Override
+            public void handle(Workflow workflow) {
+                workflows.add(workflow);
+            }
+        });
+        return workflows;
+    }
+
+    /**
+     * Streams all the workflows of the orchestrator server to the handler in server order. The list is fetched in
+     * pages of {@link #PAGE_SIZE}, with at most {@link #MAX_PARALLEL_PAGES} pages requested at the same time across
+     * all clients of this JVM. A listing has at most that many pages fetched ahead of the handler, so no more than
+     * those pages are held in memory whatever the size of the catalog.
+     */
+    public void fetchWorkflows(WorkflowHandler handler)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
+        long start = System.nanoTime();
+        PageResult firstPage = fetchWorkflowsPage(null, 0, PAGE_SIZE, handler);
+        int workflowCount = firstPage.count;
+        if (firstPage.total < 0) {
+            //Server did not report the total, page sequentially until a short page
+            int startIndex = 0;
+            PageResult page = firstPage;
+            while (page.count == PAGE_SIZE) {
+                startIndex += PAGE_SIZE;
+                page = fetchWorkflowsPage(null, startIndex, PAGE_SIZE, handler);
+                workflowCount += page.count;
+            }
+        } else if (firstPage.total > PAGE_SIZE) {
+            fetchRemainingPages(firstPage.total, handler);
+            workflowCount = firstPage.total;
+        }
+        OrchestratorMetrics.recordWorkflowListing(serverUrl, workflowCount, System.nanoTime() - start);
+    }
+
+    /**
+     * Looks up a workflow by its name with a server side query, returns null if there is none.
+     */
+    public Workflow fetchWorkflowByName(final String workflowName)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
+        final Workflow[] match = new Workflow[1];
+        fetchWorkflowsPage(NAME + "=" + workflowName, 0, NAME_QUERY_MAX_RESULT, new WorkflowHandler() {
+            @Override
+            public void handle(Workflow workflow) {
+                //The query matches the name case insensitively on some versions
+                if (match[0] == null && workflowName.equals(workflow.getName())) {
+                    match[0] = workflow;
+                }
+            }
+        });
+        return match[0];
+    }
+
+    /*
+     * Fetches the pages after the first one in parallel and hands them to the handler in server order. Only
+     * MAX_PARALLEL_PAGES pages are submitted ahead, the next one when the oldest has been handled.
+     */
+    private void fetchRemainingPages(int total, WorkflowHandler handler) throws IOException {
+        Deque<Future<List<Workflow>>> pages = new ArrayDeque<Future<List<Workflow>>>();
+        int nextStart = PAGE_SIZE;
+        try {
+            while (nextStart < total || !pages.isEmpty()) {
+                while (nextStart < total && pages.size() < Math.max(MAX_PARALLEL_PAGES, 1)) {
+                    pages.addLast(submitPage(nextStart));
+                    nextStart += PAGE_SIZE;
+                }
+                //The handled page is dropped from the window and can be collected
+                for (Workflow workflow : pages.removeFirst().get()) {
+                    handler.handle(workflow);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching workflows", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<List<Workflow>> page : pages) {
+                page.cancel(true);
+            }
+        }
+    }
+
+    private Future<List<Workflow>> submitPage(final int pageStart) {
+        return PAGE_FETCHER.submit(new Callable<List<Workflow>>() {
+            @Override
+            public List<Workflow> call() throws Exception {
+                final List<Workflow> page = new ArrayList<Workflow>(PAGE_SIZE);
+                fetchWorkflowsPage(null, pageStart, PAGE_SIZE, new WorkflowHandler() {
+                    @Override
+                    public void handle(Workflow workflow) {
+                        page.add(workflow);
+                    }
+                });
+                return page;
+            }
+        });
+    }
+
+    /*
+     * Fetches one page of workflows matching the optional condition and streams it to the handler.
+     */
+    private PageResult fetchWorkflowsPage(String condition, int startIndex, int maxResult,
+                                          final WorkflowHandler handler)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
+        StringBuilder requestUrl = new StringBuilder(String.format(WORKFLOWS_SERVICE, serverUrl));
+        requestUrl.append("?maxResult=").append(maxResult).append("&startIndex=").append(startIndex);
+        if (condition != null) {
+            requestUrl.append("&conditions=").append(getEncodedString(condition));
+        }
+        return restClient.httpGetCached(requestUrl.toString(), new ResponseReader<PageResult>() {
+            @Override
+            public PageResult read(Reader reader) throws IOException {
+                return parseWorkflows(reader, handler);
+            }
+        });
+    }
+
+    /**
+     * Parses a workflow list response with a streaming reader, handing each workflow to the handler as soon as its
+     * link is read, and returns the number of workflows and the total reported by the server.
+     */
+    static PageResult parseWorkflows(Reader reader, WorkflowHandler handler) throws IOException {
+        PageResult result = new PageResult();
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String key = jsonReader.nextName();
+            if (LINK.equals(key) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    Workflow workflow = parseWorkflowLink(jsonReader);
+                    if (workflow != null) {
+                        result.count++;
+                        handler.handle(workflow);
+                    }
+                }
+                jsonReader.endArray();
+            } else if (TOTAL.equals(key) && jsonReader.peek() == JsonToken.NUMBER) {
+                result.total = jsonReader.nextInt();
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return result;
+    }
+
+    /*
+     * Reads one link of the workflow list, returns null if it carries no attributes.
+     */
+    private static Workflow parseWorkflowLink(JsonReader jsonReader) throws IOException {
+        Workflow workflow = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (ATTRIBUTES.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                workflow = new Workflow();
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    String name = null;
+                    String value = null;
+                    jsonReader.beginObject();
+                    while (jsonReader.hasNext()) {
+                        String key = jsonReader.nextName();
+                        if (NAME.equals(key)) {
+                            name = nextStringOrNull(jsonReader);
+                        } else if (VALUE.equals(key)) {
+                            value = nextStringOrNull(jsonReader);
+                        } else {
+                            jsonReader.skipValue();
                         }
                     }
-                    workflows.add(workflow);
+                    jsonReader.endObject();
+                    if (NAME.equals(name)) {
+                        workflow.setName(value);
+                    } else if (ID.equals(name)) {
+                        workflow.setId(value);
+                    }
                 }
+                jsonReader.endArray();
+            } else {
+                jsonReader.skipValue();
             }
         }
-        return workflows;
+        jsonReader.endObject();
+        return workflow;
+    }
+
+    private static String nextStringOrNull(JsonReader jsonReader) throws IOException {
+        JsonToken token = jsonReader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return jsonReader.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(jsonReader.nextBoolean());
+        }
+        jsonReader.skipValue();
+        return null;
+    }
+
+    /**
+     * Number of workflows in a page and the total reported by the server, -1 if it reported none.
+     */
+    static class PageResult {
+        int count;
+        int total = -1;
     }
 
     /**
@@ -101,9 +384,9 @@ public class OrchestratorClient {
         //TODO Fetch all workflows and match the name to get the workflow Id. For now test with Id from the ui.
         List<Parameter> parameters = new ArrayList<Parameter>();
         if (StringUtils.isNotBlank(buildParam.getWorkflowName())) {
-            String requestUrl = String.format(WORKFLOW_SERVICE, buildParam.getServerUrl(), getEncodedString(
+            String requestUrl = String.format(WORKFLOW_SERVICE, serverUrl, getEncodedString(
                     buildParam.getWorkflowName()));
-            String workflowResponse = restClient.httpGet(requestUrl);
+            String workflowResponse = restClient.httpGetCached(requestUrl);
             //Parse workflow response to get the input parameters
             JsonObject jsonObject = getJsonObject(workflowResponse);
             if (jsonObject.has(INPUT_PARAMETERS)) {
@@ -121,18 +404,201 @@ public class OrchestratorClient {
 
     /**
      * Executes the workflow with the given input parameters and returns the executed url if successfully accepted by
-     * the server.
+     * the server. In a cluster, a workflow that could not be sent to the node of this client is sent to the next
+     * available node.
      */
     public String executeWorkflow()
             throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
             IOException {
+        cluster.startProbes();
+        List<OrchestratorCluster.Node> tried = new ArrayList<OrchestratorCluster.Node>();
+        OrchestratorCluster.Node target = node;
+        RestClient targetClient = restClient;
+        while (true) {
+            tried.add(target);
+            try {
+                return executeWorkflow(target, targetClient);
+            } catch (IOException e) {
+                //Only a request that never reached the node can be sent to another one without running twice
+                OrchestratorCluster.Node next = RetryPolicy.isUnsent(e) ? cluster.selectExcluding(tried) : null;
+                if (next == null) {
+                    throw e;
+                }
+                LOGGER.log(Level.FINE, "Sending the workflow to " + next.getUrl() + " as " + target.getUrl()
+                        + " is unavailable", e);
+                target = next;
+                targetClient = createRestClient(next.getUrl());
+            }
+        }
+    }
+
+    private String executeWorkflow(OrchestratorCluster.Node target, RestClient targetClient)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
         //TODO Fetch all workflows and match the name to get the workflow Id. For now test with Id from the ui.
         String requestUrl = String
-                .format(WORKFLOW_EXECUTION_SERVICE, buildParam.getServerUrl(), getEncodedString(
+                .format(WORKFLOW_EXECUTION_SERVICE, target.getUrl(), getEncodedString(
                         buildParam.getWorkflowName()));
-        String payLoad = constructRequestPayload(buildParam.getInputParams());
-        System.out.println("Execute Payload : " + payLoad);
-        return restClient.httpPostForLocationHeader(requestUrl, payLoad);
+        List<Parameter> inputParams = buildParam.getInputParams();
+        HttpEntity payload = null;
+        if (inputParams != null && inputParams.size() > 0) {
+            PayloadEncoder encoder = buildParam.getPayloadEncoder();
+            if (encoder == null || !encoder.isCompiledFor(inputParams)) {
+                encoder = PayloadEncoder.compile(inputParams);
+            }
+            payload = new PayloadEntity(encoder, inputParams);
+        }
+        //Count the submission against the node until it is answered, so that concurrent builds spread over the cluster
+        target.executionStarted();
+        long start = System.nanoTime();
+        try {
+            String executionUrl = targetClient.httpPostForLocationHeader(requestUrl, payload);
+            target.recordLatency(System.nanoTime() - start);
+            return executionUrl;
+        } finally {
+            target.executionFinished();
+        }
+    }
+
+    /**
+     * Fetches the execution once and returns its state together with, once it completed, its output parameters,
+     * dates and error.
+     */
+    public ExecutionSnapshot fetchExecutionSnapshot(String requestUrl)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
+        return restClient.httpGet(requestUrl, new ResponseReader<ExecutionSnapshot>() {
+            @Override
+            public ExecutionSnapshot read(Reader reader) throws IOException {
+                return parseExecutionSnapshot(reader);
+            }
+        });
+    }
+
+    private synchronized AsyncRestClient getAsyncRestClient() {
+        if (asyncRestClient == null) {
+            asyncRestClient = new AsyncRestClient(restClient);
+        }
+        return asyncRestClient;
+    }
+
+    /**
+     * Fetches the execution once like {@link #fetchExecutionSnapshot(String)} without holding a thread while the
+     * server answers. The callback runs on an I/O thread of the {@link AsyncRestClient} and must not block.
+     */
+    public Future<ExecutionSnapshot> fetchExecutionSnapshotAsync(String requestUrl,
+                                                                 FutureCallback<ExecutionSnapshot> callback) {
+        return getAsyncRestClient().httpGet(requestUrl, new ResponseReader<ExecutionSnapshot>() {
+            @Override
+            public ExecutionSnapshot read(Reader reader) throws IOException {
+                return parseExecutionSnapshot(reader);
+            }
+        }, callback);
+    }
+
+    /**
+     * Streams at most maxResult log entries of the execution logged at or after the given time to the handler, oldest
+     * first and skipping the first startIndex of them, and returns their number.
+     */
+    public int fetchExecutionLogs(String executionUrl, long sinceMillis, int startIndex, int maxResult,
+                                  final LogEntryHandler handler)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
+        StringBuilder requestUrl = new StringBuilder(executionUrl);
+        if (!executionUrl.endsWith("/")) {
+            requestUrl.append('/');
+        }
+        requestUrl.append("syslogs?maxResult=").append(maxResult).append("&startIndex=").append(startIndex)
+                .append("&sortOrder=").append(getEncodedString(LOG_SORT_ORDER));
+        if (sinceMillis > 0) {
+            requestUrl.append("&conditions=").append(getEncodedString("timestamp>=" + sinceMillis));
+        }
+        Integer count = restClient.httpGet(requestUrl.toString(), new ResponseReader<Integer>() {
+            @Override
+            public Integer read(Reader reader) throws IOException {
+                return parseExecutionLogs(reader, handler);
+            }
+        });
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Parses an execution log response with a streaming reader, handing each entry to the handler.
+     */
+    static int parseExecutionLogs(Reader reader, LogEntryHandler handler) throws IOException {
+        int count = 0;
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (LOGS.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    ExecutionLogEntry entry = parseExecutionLog(jsonReader);
+                    if (entry != null) {
+                        count++;
+                        handler.handle(entry);
+                    }
+                }
+                jsonReader.endArray();
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return count;
+    }
+
+    /*
+     * Reads one {"entry":{..}} element of the logs, returns null if it carries no entry.
+     */
+    private static ExecutionLogEntry parseExecutionLog(JsonReader jsonReader) throws IOException {
+        ExecutionLogEntry entry = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (ENTRY.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                long timestamp = 0;
+                String time = null;
+                String severity = null;
+                String shortDescription = null;
+                String longDescription = null;
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    String key = jsonReader.nextName();
+                    if (TIME_STAMP_VAL.equals(key) && jsonReader.peek() == JsonToken.NUMBER) {
+                        timestamp = jsonReader.nextLong();
+                    } else if (TIME_STAMP.equals(key)) {
+                        time = nextStringOrNull(jsonReader);
+                    } else if (SEVERITY.equals(key)) {
+                        severity = nextStringOrNull(jsonReader);
+                    } else if (SHORT_DESCRIPTION.equals(key)) {
+                        shortDescription = nextStringOrNull(jsonReader);
+                    } else if (LONG_DESCRIPTION.equals(key)) {
+                        longDescription = nextStringOrNull(jsonReader);
+                    } else {
+                        jsonReader.skipValue();
+                    }
+                }
+                jsonReader.endObject();
+                entry = new ExecutionLogEntry(timestamp, time, severity,
+                        longDescription != null ? longDescription : shortDescription);
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return entry;
+    }
+
+    /**
+     * Asks the server to cancel the execution. Returns false if the server refused, for example because the
+     * execution already completed.
+     */
+    public boolean cancelExecution(String executionUrl)
+            throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            IOException {
+        String requestUrl = executionUrl + (executionUrl.endsWith("/") ? "" : "/") + "state";
+        int statusCode = restClient.httpDelete(requestUrl);
+        return statusCode >= 200 && statusCode < 300;
     }
 
     /**
@@ -141,17 +607,10 @@ public class OrchestratorClient {
     public ExecutionState fetchWorkflowState(String requestUrl)
             throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
             IOException {
+        ExecutionSnapshot snapshot = fetchExecutionSnapshot(requestUrl);
         ExecutionState executionState = new ExecutionState();
-        String workflowResponse = restClient.httpGet(requestUrl);
-        JsonObject responseJson = getJsonObject(workflowResponse);
-        if (responseJson.has(STATE)) {
-            String state = responseJson.get(STATE).getAsString();
-            executionState.setState(state);
-            if (state.equals("completed") || state.equals("canceled") || state.equals("failed")) {
-                executionState.setCompleted(true);
-                return executionState;
-            }
-        }
+        executionState.setState(snapshot.getState());
+        executionState.setCompleted(snapshot.isCompleted());
         return executionState;
     }
 
@@ -161,71 +620,136 @@ public class OrchestratorClient {
     public ExecutionOutput fetchWorkflowOutputParameters(String requestUrl)
             throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
             IOException {
+        ExecutionSnapshot snapshot = fetchExecutionSnapshot(requestUrl);
         ExecutionOutput executionOutput = new ExecutionOutput();
-        String workflowResponse = restClient.httpGet(requestUrl);
-        JsonObject responseJson = getJsonObject(workflowResponse);
-        if (responseJson.has(STATE)) {
-            String state = responseJson.get(STATE).getAsString();
-            executionOutput.setState(state);
-        }
-        if (responseJson.has(OUTPUT_PARAMETERS)) {
-            JsonArray jsonArray = responseJson.getAsJsonArray(OUTPUT_PARAMETERS);
-            executionOutput.setParameters(jsonArray.toString());
-        }
+        executionOutput.setState(snapshot.getState());
+        executionOutput.setParameters(snapshot.getOutputParameters());
         return executionOutput;
     }
 
-    private String constructRequestPayload(List<Parameter> inputParams) {
-        if (inputParams != null && inputParams.size() > 0) {
-            JsonObject parametersJsonObj = new JsonObject();
-            JsonArray jsonArray = new JsonArray();
-            for (Parameter parameter : inputParams) {
-                JsonObject jsonObject = new JsonObject();
-                int index = parameter.getName().indexOf('@');
-                String name = parameter.getName().substring(0, index);
-                String type = parameter.getName().substring(index + 1, parameter.getName().length());
-
-                jsonObject.addProperty(NAME, name);
-                jsonObject.addProperty(TYPE, type);
-                jsonObject.add(VALUE, constructValueObjectBasedOnType(type, parameter.getValue()));
-
-                jsonArray.add(jsonObject);
+    /**
+     * Parses an execution response. Of the output-parameters array, only the JSON of each parameter is kept.
+     */
+    static ExecutionSnapshot parseExecutionSnapshot(Reader reader) throws IOException {
+        ExecutionSnapshot snapshot = new ExecutionSnapshot();
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String key = jsonReader.nextName();
+            if (STATE.equals(key)) {
+                snapshot.setState(nextStringOrNull(jsonReader));
+            } else if (OUTPUT_PARAMETERS.equals(key) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                snapshot.setOutputs(parseOutputParameters(jsonReader));
+            } else if (START_DATE.equals(key)) {
+                snapshot.setStartDate(nextStringOrNull(jsonReader));
+            } else if (END_DATE.equals(key)) {
+                snapshot.setEndDate(nextStringOrNull(jsonReader));
+            } else if (CONTENT_EXCEPTION.equals(key)) {
+                snapshot.setError(nextStringOrNull(jsonReader));
+            } else {
+                jsonReader.skipValue();
             }
-            parametersJsonObj.add(PARAMETERS, jsonArray);
-            return parametersJsonObj.toString();
         }
-        return null;
+        jsonReader.endObject();
+        String state = snapshot.getState();
+        snapshot.setCompleted("completed".equals(state) || "canceled".equals(state) || "failed".equals(state));
+        return snapshot;
     }
 
-    private JsonObject constructValueObjectBasedOnType(String type, String value) {
-        if (isPrimitiveType(type)) {
-            JsonObject valueObj = new JsonObject();
-            valueObj.addProperty(VALUE, value);
+    private static List<OutputParameter> parseOutputParameters(JsonReader jsonReader) throws IOException {
+        List<OutputParameter> parameters = new ArrayList<OutputParameter>();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                jsonReader.skipValue();
+                continue;
+            }
+            OutputParameter parameter = parseOutputParameter(jsonReader);
+            if (parameter != null) {
+                parameters.add(parameter);
+            }
+        }
+        jsonReader.endArray();
+        return parameters;
+    }
 
-            JsonObject valueTypeObj = new JsonObject();
-            if (type.equalsIgnoreCase("EncryptedString") || type.equalsIgnoreCase("SecureString")) {
-                valueTypeObj.add("string", valueObj);
+    /*
+     * Copies one parameter object to its JSON, noting its name, type, and whether its value object such as
+     * {"string":{"value":"x"}} holds a scalar. Parameters without a name are null.
+     */
+    private static OutputParameter parseOutputParameter(JsonReader jsonReader) throws IOException {
+        StringWriter json = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(json);
+        String name = null;
+        String type = null;
+        boolean scalar = false;
+        jsonReader.beginObject();
+        jsonWriter.beginObject();
+        while (jsonReader.hasNext()) {
+            String key = jsonReader.nextName();
+            jsonWriter.name(key);
+            if ((NAME.equals(key) || TYPE.equals(key)) && jsonReader.peek() == JsonToken.STRING) {
+                String text = jsonReader.nextString();
+                jsonWriter.value(text);
+                if (NAME.equals(key)) {
+                    name = text;
+                } else {
+                    type = text;
+                }
+            } else if (VALUE.equals(key) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                scalar = copyOutputValue(jsonReader, jsonWriter);
             } else {
-                valueTypeObj.add(type.toLowerCase(), valueObj);
+                JsonStreams.copy(jsonReader, jsonWriter);
             }
-            return valueTypeObj;
-        } else {
-            //Assuming it is sdk-object type
-            JsonObject sdkObjectContent = new JsonObject();
-            sdkObjectContent.addProperty(ID, value);
-            sdkObjectContent.addProperty(TYPE, type);
+        }
+        jsonReader.endObject();
+        jsonWriter.endObject();
+        jsonWriter.flush();
+        return name != null ? new OutputParameter(name, type, json.toString(), scalar) : null;
+    }
 
-            JsonObject sdkObject = new JsonObject();
-            sdkObject.add(SDK_OBJECT, sdkObjectContent);
-            return sdkObject;
+    /*
+     * Copies a value object, returns true if its first typed content has a scalar value.
+     */
+    private static boolean copyOutputValue(JsonReader jsonReader, JsonWriter jsonWriter) throws IOException {
+        boolean scalar = false;
+        boolean first = true;
+        jsonReader.beginObject();
+        jsonWriter.beginObject();
+        while (jsonReader.hasNext()) {
+            jsonWriter.name(jsonReader.nextName());
+            if (!first || jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                JsonStreams.copy(jsonReader, jsonWriter);
+                first = false;
+                continue;
+            }
+            first = false;
+            jsonReader.beginObject();
+            jsonWriter.beginObject();
+            while (jsonReader.hasNext()) {
+                String key = jsonReader.nextName();
+                jsonWriter.name(key);
+                JsonToken token = jsonReader.peek();
+                scalar |= VALUE.equals(key)
+                        && (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN);
+                JsonStreams.copy(jsonReader, jsonWriter);
+            }
+            jsonReader.endObject();
+            jsonWriter.endObject();
         }
+        jsonReader.endObject();
+        jsonWriter.endObject();
+        return scalar;
     }
 
-    private boolean isPrimitiveType(String type) {
-        //Not supported are properties / array / mime-attachment / regex / composite
-        return type.equalsIgnoreCase("string") || type.equalsIgnoreCase("EncryptedString") || type.equalsIgnoreCase(
-                "SecureString") || type
-                .equalsIgnoreCase("number") || type.equalsIgnoreCase("date") || type.equalsIgnoreCase("boolean");
+    /**
+     * Returns the execution request payload of the input parameters, null if there are none.
+     */
+    static String constructRequestPayload(List<Parameter> inputParams) throws IOException {
+        if (inputParams != null && inputParams.size() > 0) {
+            return PayloadEncoder.compile(inputParams).toJson(inputParams);
+        }
+        return null;
     }
 
     private JsonObject getJsonObject(String response) {
@@ -0,0 +1,339 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import com.vmware.vro.jenkins.plugin.util.CircuitBreaker;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import com.vmware.vro.jenkins.plugin.util.HttpClientPool;
+import com.vmware.vro.jenkins.plugin.util.OrchestratorMetrics;
+
+/**
+ * The nodes of an Orchestrator cluster, given as a server url that lists several node urls separated by commas or
+ * spaces.
+ * <p/>
+ * Each request that is not bound to an execution goes to the better of two randomly picked nodes, the one with the
+ * lower score: its latency averaged over recent requests and health probes, multiplied by the executions it is
+ * running for this JVM plus one. Nodes whose health probe failed, or whose circuit breaker is open, are skipped until
+ * they recover. Requests for an execution always go to the node that accepted it, which is the node its absolute url
+ * points to.
+ * <p/>
+ * Nodes are only probed once a build submits to or waits on the cluster, or a saved job is prewarmed, so urls typed
+ * into the configuration page never start probes. A cluster unused for {@link #IDLE_MILLIS} with no execution running
+ * is dropped with its probes and breakers.
+ * <p/>
+ * A server url with a single node is used as is, without probes. Use the prefix
+ * {@code com.vmware.vro.jenkins.plugin.OrchestratorCluster.} for the system properties.
+ */
+final class OrchestratorCluster {
+    private static final Logger LOGGER = Logger.getLogger(OrchestratorCluster.class.getName());
+
+    private static final String PROPERTY_PREFIX = OrchestratorCluster.class.getName() + ".";
+
+    static final long PROBE_INTERVAL_MILLIS = Long.getLong(PROPERTY_PREFIX + "probeInterval", 10000L);
+    static final int PROBE_TIMEOUT_MILLIS = Integer.getInteger(PROPERTY_PREFIX + "probeTimeout", 5000);
+    static final long IDLE_MILLIS = Long.getLong(PROPERTY_PREFIX + "idleTimeout", 10 * 60 * 1000L);
+
+    private static final String HEALTH_SERVICE = "%s/vco/api/healthstatus";
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private static final ConcurrentMap<String, OrchestratorCluster> CLUSTERS =
+            new ConcurrentHashMap<String, OrchestratorCluster>();
+
+    private static final ScheduledExecutorService PROBER = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("vRO cluster health probe"));
+
+    static {
+        long sweepMillis = Math.max(Math.min(IDLE_MILLIS, 60 * 1000L), 1000L);
+        PROBER.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle();
+            }
+        }, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private final List<Node> nodes;
+    private final List<ScheduledFuture<?>> probes = new ArrayList<ScheduledFuture<?>>();
+    private volatile long lastUsedAt = System.currentTimeMillis();
+    private boolean evicted;
+
+    private OrchestratorCluster(List<String> nodeUrls) {
+        List<Node> list = new ArrayList<Node>(nodeUrls.size());
+        for (String nodeUrl : nodeUrls) {
+            list.add(new Node(nodeUrl));
+        }
+        nodes = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the cluster of the given server url, shared by every build of this JVM. Its nodes are not probed until
+     * {@link #startProbes()} is called.
+     */
+    static OrchestratorCluster forServer(String serverUrl) {
+        OrchestratorCluster cluster = CLUSTERS.get(serverUrl);
+        if (cluster == null) {
+            OrchestratorCluster newCluster = new OrchestratorCluster(parseNodeUrls(serverUrl));
+            cluster = CLUSTERS.putIfAbsent(serverUrl, newCluster);
+            if (cluster == null) {
+                cluster = newCluster;
+            }
+        }
+        cluster.lastUsedAt = System.currentTimeMillis();
+        return cluster;
+    }
+
+    /**
+     * Splits a server url into the urls of its nodes, without trailing slashes.
+     */
+    static List<String> parseNodeUrls(String serverUrl) {
+        List<String> nodeUrls = new ArrayList<String>();
+        if (serverUrl != null) {
+            for (String nodeUrl : serverUrl.split("[,\\s]+")) {
+                if (nodeUrl.length() > 0) {
+                    nodeUrls.add(StringUtils.removeEnd(nodeUrl, "/"));
+                }
+            }
+        }
+        if (nodeUrls.isEmpty()) {
+            nodeUrls.add(serverUrl);
+        }
+        return nodeUrls;
+    }
+
+    /**
+     * Picks two available nodes at random and returns the one with the lower score. Comparing two random nodes
+     * instead of taking the lowest score of all keeps every JVM from sending its builds to the same node between two
+     * latency updates. When no node is available, the lowest scored one is returned so that the request fails with
+     * the node's own error.
+     */
+    Node select() {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        List<Node> available = new ArrayList<Node>(nodes.size());
+        for (Node node : nodes) {
+            if (node.isAvailable()) {
+                available.add(node);
+            }
+        }
+        if (available.isEmpty()) {
+            return lowestScore(nodes);
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        Random random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = (first + 1 + random.nextInt(available.size() - 1)) % available.size();
+        Node firstNode = available.get(first);
+        Node secondNode = available.get(second);
+        return secondNode.getScore() < firstNode.getScore() ? secondNode : firstNode;
+    }
+
+    /**
+     * Returns the available node with the lowest score other than the given ones, or null if there is none.
+     */
+    Node selectExcluding(Collection<Node> excluded) {
+        List<Node> candidates = new ArrayList<Node>(nodes.size());
+        for (Node node : nodes) {
+            if (!excluded.contains(node) && node.isAvailable()) {
+                candidates.add(node);
+            }
+        }
+        return candidates.isEmpty() ? null : lowestScore(candidates);
+    }
+
+    private static Node lowestScore(List<Node> candidates) {
+        Node best = candidates.get(0);
+        for (Node node : candidates) {
+            if (node.getScore() < best.getScore()) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the node the given absolute url points to. A url on a host that is not one of the nodes gets a node of
+     * its own, which is not balanced.
+     */
+    Node nodeOf(String url) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        String origin = originOf(url);
+        for (Node node : nodes) {
+            if (node.origin.equals(origin)) {
+                return node;
+            }
+        }
+        return new Node(origin);
+    }
+
+    /**
+     * Starts probing the nodes, for a cluster that builds use. Does nothing if they are probed already.
+     */
+    synchronized void startProbes() {
+        if (evicted || !probes.isEmpty() || nodes.size() <= 1 || PROBE_INTERVAL_MILLIS <= 0) {
+            return;
+        }
+        for (final Node node : nodes) {
+            probes.add(PROBER.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    node.probe();
+                }
+            }, 0, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private boolean isIdle(long now) {
+        if (now - lastUsedAt < IDLE_MILLIS) {
+            return false;
+        }
+        for (Node node : nodes) {
+            if (node.executions.get() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * A caller still holding an evicted cluster can use it, only without probes, and a new one is created for the
+     * next lookup.
+     */
+    private static void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, OrchestratorCluster> entry : CLUSTERS.entrySet()) {
+            OrchestratorCluster cluster = entry.getValue();
+            if (cluster.isIdle(now) && CLUSTERS.remove(entry.getKey(), cluster)) {
+                cluster.close();
+            }
+        }
+    }
+
+    private synchronized void close() {
+        evicted = true;
+        for (ScheduledFuture<?> probe : probes) {
+            probe.cancel(false);
+        }
+        probes.clear();
+        for (Node node : nodes) {
+            CircuitBreaker.remove(node.url);
+            OrchestratorMetrics.nodeRemoved(node.url);
+        }
+    }
+
+    /*
+     * Scheme, host and port of a url, the part that identifies the node serving it.
+     */
+    private static String originOf(String url) {
+        try {
+            URL parsed = new URL(url);
+            int port = parsed.getPort() != -1 ? parsed.getPort() : parsed.getDefaultPort();
+            return String.format("%s://%s:%d", parsed.getProtocol().toLowerCase(Locale.ENGLISH),
+                    parsed.getHost().toLowerCase(Locale.ENGLISH), port);
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * One node of the cluster, with its health, latency and load as seen from this JVM.
+     */
+    static final class Node {
+        private final String url;
+        private final String origin;
+        private final AtomicInteger executions = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private volatile double latencyMillis;
+
+        private Node(String url) {
+            this.url = url;
+            this.origin = originOf(url);
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        /**
+         * Counts an execution submitted to or waited on from this node until {@link #executionFinished()}.
+         */
+        void executionStarted() {
+            executions.incrementAndGet();
+        }
+
+        void executionFinished() {
+            executions.decrementAndGet();
+        }
+
+        /**
+         * Folds the duration of a request answered by the node into its average latency.
+         */
+        void recordLatency(long durationNanos) {
+            double millis = durationNanos / 1e6;
+            double average = latencyMillis;
+            latencyMillis = average == 0 ? millis : average + LATENCY_WEIGHT * (millis - average);
+        }
+
+        boolean isAvailable() {
+            return healthy && CircuitBreaker.forServer(url).getState() != CircuitBreaker.State.OPEN;
+        }
+
+        double getScore() {
+            return (latencyMillis + 1) * (executions.get() + 1);
+        }
+
+        /*
+         * Any response below 500 other than 429 shows the node is up, the health service may require a login.
+         */
+        private void probe() {
+            long start = System.nanoTime();
+            boolean up;
+            try {
+                HttpGet get = new HttpGet(String.format(HEALTH_SERVICE, url));
+                get.setConfig(HttpClientPool.getRequestConfig(PROBE_TIMEOUT_MILLIS));
+                HttpResponse response = HttpClientPool.getClient(url, true).execute(get);
+                EntityUtils.consume(response.getEntity());
+                int statusCode = response.getStatusLine().getStatusCode();
+                up = statusCode < 500 && statusCode != 429;
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Health probe of " + url + " failed", e);
+                up = false;
+            }
+            if (up) {
+                recordLatency(System.nanoTime() - start);
+            }
+            if (up != healthy) {
+                LOGGER.log(up ? Level.INFO : Level.WARNING, "Orchestrator node {0} is now {1}",
+                        new Object[]{url, up ? "healthy" : "unhealthy"});
+                healthy = up;
+            }
+            OrchestratorMetrics.recordNodeHealth(url, up);
+        }
+    }
+}
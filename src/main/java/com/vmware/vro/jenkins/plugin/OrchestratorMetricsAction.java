@@ -0,0 +1,43 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import com.vmware.vro.jenkins.plugin.util.OrchestratorMetrics;
+import hudson.Extension;
+import hudson.model.RootAction;
+
+/**
+ * Serves the controller's {@link OrchestratorMetrics} in the Prometheus text format at {@code /vro-metrics/}.
+ * Reading them requires the administer permission, as the series are labelled with the server urls.
+ */
+@Extension
+public class OrchestratorMetricsAction implements RootAction {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "vRealize Orchestrator Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "vro-metrics";
+    }
+
+    public void doIndex(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        response.setContentType(CONTENT_TYPE);
+        PrintWriter writer = response.getWriter();
+        OrchestratorMetrics.writePrometheus(writer);
+        writer.flush();
+    }
+}
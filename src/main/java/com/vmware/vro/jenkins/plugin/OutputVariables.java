@@ -0,0 +1,156 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+import com.vmware.vro.jenkins.plugin.model.OutputParameter;
+import hudson.FilePath;
+
+/**
+ * Exposes the output parameters of a completed execution as build environment variables: the whole array as
+ * {@code ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT} and each parameter as {@code ORCHESTRATOR_OUTPUT_<name>}.
+ * <p/>
+ * Values whose JSON is longer than {@link #MAX_VALUE_LENGTH} characters are streamed to a file of the output directory
+ * instead, and only its path is set, in a variable with the {@value #FILE_SUFFIX} suffix. Large outputs then neither
+ * exceed the environment limits of the build's processes nor stay in the controller's memory.
+ * <p/>
+ * The console only shows the size of each value or the path of its file, and not even the size of SecureString and
+ * EncryptedString values.
+ */
+final class OutputVariables {
+    private static final String PROPERTY_PREFIX = OutputVariables.class.getName() + ".";
+
+    static final int MAX_VALUE_LENGTH = Integer.getInteger(PROPERTY_PREFIX + "maxValueLength", 16 * 1024);
+    static final String OUTPUT_PREFIX = "ORCHESTRATOR_OUTPUT_";
+    static final String FILE_SUFFIX = "_FILE";
+
+    private static final String MASK = "********";
+
+    private OutputVariables() {
+    }
+
+    /**
+     * Adds the variables of the snapshot's outputs to the data. Without an output directory, values are always set
+     * inline. Parameters whose names map to the same variable are reported on the console, the first one is kept,
+     * and the console lists the variables set.
+     */
+    static void collect(ExecutionSnapshot snapshot, FilePath outputDir, Map<String, String> data, PrintStream console)
+            throws IOException, InterruptedException {
+        String aggregateName = OrchestratorCallable.ORCHESTRATOR_WORKFLOW_EXECUTION_OUTPUT;
+        if (outputDir == null || snapshot.getOutputParametersLength() <= MAX_VALUE_LENGTH) {
+            String outputParameters = snapshot.getOutputParameters();
+            if (outputParameters != null) {
+                data.put(aggregateName, outputParameters);
+            }
+        } else {
+            Writer writer = openFile(outputDir, aggregateName, data);
+            try {
+                snapshot.writeOutputParameters(writer);
+            } finally {
+                writer.close();
+            }
+        }
+
+        if (console != null && !snapshot.getOutputs().isEmpty()) {
+            console.println("Output parameters of the workflow execution");
+            describe(data, aggregateName, false, console);
+        }
+
+        Map<String, String> parameterNames = new HashMap<String, String>();
+        for (OutputParameter output : snapshot.getOutputs()) {
+            String name = OUTPUT_PREFIX + toVariableName(output.getName());
+            String previous = parameterNames.put(name, output.getName());
+            if (previous != null) {
+                parameterNames.put(name, previous);
+                if (console != null) {
+                    console.println(String.format("Output parameters %s and %s are both set as %s, ignoring %s",
+                            previous, output.getName(), name, output.getName()));
+                }
+                continue;
+            }
+            put(data, name, output, outputDir);
+            if (console != null) {
+                describe(data, name, isSecure(output.getType()), console);
+            }
+        }
+    }
+
+    /**
+     * Deletes the files written by earlier builds to the output directory.
+     */
+    static void clean(FilePath outputDir) throws IOException, InterruptedException {
+        if (outputDir != null && outputDir.exists()) {
+            outputDir.deleteContents();
+        }
+    }
+
+    private static void put(Map<String, String> data, String name, OutputParameter output, FilePath outputDir)
+            throws IOException, InterruptedException {
+        if (outputDir == null || output.getJson().length() <= MAX_VALUE_LENGTH) {
+            String value = output.getValue();
+            if (value != null) {
+                data.put(name, value);
+            }
+            return;
+        }
+        Writer writer = openFile(outputDir, name, data);
+        try {
+            output.writeValue(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static Writer openFile(FilePath outputDir, String name, Map<String, String> data)
+            throws IOException, InterruptedException {
+        outputDir.mkdirs();
+        FilePath file = outputDir.child(name);
+        data.put(name + FILE_SUFFIX, file.getRemote());
+        return new BufferedWriter(new OutputStreamWriter(file.write(), "UTF-8"));
+    }
+
+    /*
+     * Prints the size of a variable's value, or the path of the file it was written to, but never the value.
+     */
+    private static void describe(Map<String, String> data, String name, boolean secure, PrintStream console) {
+        String file = data.get(name + FILE_SUFFIX);
+        String value = data.get(name);
+        if (secure && (file != null || value != null)) {
+            console.println(name + " : " + MASK);
+        } else if (file != null) {
+            console.println(name + FILE_SUFFIX + " : " + file);
+        } else if (value != null) {
+            console.println(name + " : " + value.length() + " characters");
+        } else {
+            console.println(name + " : no value");
+        }
+    }
+
+    private static boolean isSecure(String type) {
+        if (type == null) {
+            return false;
+        }
+        String lowerCaseType = type.toLowerCase(Locale.ENGLISH);
+        return lowerCaseType.contains("securestring") || lowerCaseType.contains("encryptedstring");
+    }
+
+    /*
+     * Parameter names may contain characters that shells do not accept in variable names.
+     */
+    static String toVariableName(String name) {
+        StringBuilder variableName = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            variableName.append(valid ? c : '_');
+        }
+        return variableName.toString();
+    }
+}
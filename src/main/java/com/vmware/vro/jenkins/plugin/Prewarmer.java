@@ -0,0 +1,154 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.Workflow;
+import com.vmware.vro.jenkins.plugin.util.CacheKeys;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import hudson.Util;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.Project;
+import jenkins.model.Jenkins;
+
+/**
+ * Warms the caches of the Orchestrator servers used by the jobs once the controller has loaded them, so that the
+ * first builds after a start do not pay for connections, logins, catalog downloads and workflow definitions.
+ * <p/>
+ * For every server and user configured in a job, a background task opens pooled connections to the server, or starts
+ * the health probes of its nodes, obtains a token, loads the workflow catalog and the input parameters of the
+ * workflows the jobs run. Values set by variables cannot be resolved outside a build and are skipped. At most
+ * {@link #MAX_CONCURRENCY} tasks run at a time. Use the prefix {@code com.vmware.vro.jenkins.plugin.Prewarmer.} for
+ * the system properties.
+ */
+public final class Prewarmer {
+    private static final Logger LOGGER = Logger.getLogger(Prewarmer.class.getName());
+
+    private static final String PROPERTY_PREFIX = Prewarmer.class.getName() + ".";
+
+    static final int MAX_CONCURRENCY = Integer.getInteger(PROPERTY_PREFIX + "maxConcurrency", 4);
+
+    private Prewarmer() {
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void prewarm() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || MAX_CONCURRENCY <= 0) {
+            return;
+        }
+        Map<String, Target> targets = new LinkedHashMap<String, Target>();
+        for (AbstractProject<?, ?> project : jenkins.getAllItems(AbstractProject.class)) {
+            if (!(project instanceof Project)) {
+                continue;
+            }
+            for (OrchestratorBuilder builder : ((Project<?, ?>) project).getBuildersList().getAll(
+                    OrchestratorBuilder.class)) {
+                addTarget(targets, builder);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CONCURRENCY, MAX_CONCURRENCY, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("vRO prewarmer"));
+        executor.allowCoreThreadTimeOut(true);
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        long start = System.nanoTime();
+        for (Target target : targets.values()) {
+            executor.execute(new Prewarm(target, remaining, start));
+        }
+        executor.shutdown();
+    }
+
+    private static void addTarget(Map<String, Target> targets, OrchestratorBuilder builder) {
+        String serverUrl = resolved(builder.getServerUrl());
+        String userName = resolved(builder.getUserName());
+        String password = resolved(builder.getPassword());
+        if (serverUrl == null || userName == null || password == null) {
+            return;
+        }
+        String tenant = resolved(builder.getTenant());
+        String key = CacheKeys.forCredentials(serverUrl, tenant, userName, password);
+        Target target = targets.get(key);
+        if (target == null) {
+            target = new Target(new BuildParam(serverUrl, userName, password, tenant, null));
+            targets.put(key, target);
+        }
+        String workflowName = resolved(builder.getWorkflowName());
+        if (workflowName != null) {
+            target.workflowNames.add(workflowName);
+        }
+    }
+
+    /*
+     * Returns the trimmed value, or null if it is empty or set by a variable.
+     */
+    private static String resolved(String value) {
+        String trimmed = Util.fixEmptyAndTrim(value);
+        return trimmed != null && trimmed.indexOf('$') < 0 ? trimmed : null;
+    }
+
+    /*
+     * A server and user, with the workflows that jobs run with them.
+     */
+    private static final class Target {
+        final BuildParam buildParam;
+        final Set<String> workflowNames = new LinkedHashSet<String>();
+
+        Target(BuildParam buildParam) {
+            this.buildParam = buildParam;
+        }
+    }
+
+    private static final class Prewarm implements Runnable {
+        private final Target target;
+        private final AtomicInteger remaining;
+        private final long start;
+
+        Prewarm(Target target, AtomicInteger remaining, long start) {
+            this.target = target;
+            this.remaining = remaining;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            BuildParam param = target.buildParam;
+            try {
+                //Clusters probe their nodes, which opens a connection to each of them
+                OrchestratorCluster.forServer(param.getServerUrl()).startProbes();
+                //The first request logs in and opens the pooled connections
+                WorkflowCatalogCache.getCatalog(param);
+                for (String workflowName : target.workflowNames) {
+                    Workflow workflow = WorkflowCatalogCache.findWorkflowByName(param, workflowName);
+                    if (workflow != null) {
+                        WorkflowSchemaCache.getSchema(new BuildParam(param.getServerUrl(), param.getUserName(),
+                                param.getPassword(), param.getTenant(), workflow.getId()));
+                    }
+                }
+                LOGGER.log(Level.FINE, "Prewarmed Orchestrator server {0} for {1}",
+                        new Object[]{param.getServerUrl(), param.getUserName()});
+            } catch (Exception e) {
+                LOGGER.log(Level.INFO, "Failed to prewarm Orchestrator server " + param.getServerUrl()
+                        + " for " + param.getUserName(), e);
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    LOGGER.log(Level.INFO, "Prewarmed the Orchestrator servers of the jobs in {0} ms",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            }
+        }
+    }
+}
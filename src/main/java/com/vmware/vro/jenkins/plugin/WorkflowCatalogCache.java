@@ -0,0 +1,147 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.Workflow;
+import com.vmware.vro.jenkins.plugin.model.WorkflowCatalog;
+import com.vmware.vro.jenkins.plugin.util.CacheKeys;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import com.vmware.vro.jenkins.plugin.util.SingleFlight;
+
+/**
+ * Caches the workflow catalog of each server so that resolving a workflow name is an in-memory lookup.
+ * <p/>
+ * A catalog is fresh for {@link #TTL_MILLIS}. After that and until {@link #STALE_MILLIS} it is still served while a
+ * single background load replaces it; older catalogs are loaded again before being served. At most
+ * {@link #MAX_CATALOGS} catalogs are kept, the least recently used one is evicted first.
+ */
+public final class WorkflowCatalogCache {
+    private static final String PROPERTY_PREFIX = WorkflowCatalogCache.class.getName() + ".";
+
+    static final long TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + "ttl", 5 * 60 * 1000L);
+    static final long STALE_MILLIS = Long.getLong(PROPERTY_PREFIX + "stale", 60 * 60 * 1000L);
+    static final int MAX_CATALOGS = Integer.getInteger(PROPERTY_PREFIX + "maxCatalogs", 32);
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_CATALOGS;
+        }
+    };
+
+    private static final ExecutorService REFRESHER = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("vRO workflow catalog refresher"));
+
+    private WorkflowCatalogCache() {
+    }
+
+    /**
+     * Returns the catalog of the server and user of the given build param.
+     */
+    public static WorkflowCatalog getCatalog(BuildParam buildParam) throws IOException {
+        Entry entry = getEntry(buildParam);
+        WorkflowCatalog catalog = entry.catalog.get();
+        if (catalog != null) {
+            long age = System.currentTimeMillis() - catalog.getLoadedAt();
+            if (age < TTL_MILLIS) {
+                return catalog;
+            }
+            if (age < STALE_MILLIS) {
+                entry.refreshInBackground(buildParam);
+                return catalog;
+            }
+        }
+        return entry.load(buildParam);
+    }
+
+    /**
+     * Resolves a workflow by name from the cached catalog. When there is no catalog yet, or the name is not in it
+     * because the workflow was created since, the workflow is looked up with a server side query instead of
+     * downloading the whole catalog; a missing catalog is then loaded in the background.
+     */
+    public static Workflow findWorkflowByName(BuildParam buildParam, String workflowName) throws IOException {
+        Entry entry = getEntry(buildParam);
+        WorkflowCatalog catalog = entry.catalog.get();
+        Workflow workflow = null;
+        if (catalog != null && System.currentTimeMillis() - catalog.getLoadedAt() < STALE_MILLIS) {
+            workflow = getCatalog(buildParam).getByName(workflowName);
+        } else {
+            entry.refreshInBackground(buildParam);
+        }
+        if (workflow == null) {
+            try {
+                workflow = new OrchestratorClient(buildParam).fetchWorkflowByName(workflowName);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        return workflow;
+    }
+
+    /**
+     * Drops every cached catalog of the given server.
+     */
+    public static void invalidate(String serverUrl) {
+        synchronized (ENTRIES) {
+            Iterator<String> keys = ENTRIES.keySet().iterator();
+            while (keys.hasNext()) {
+                if (CacheKeys.isForServer(keys.next(), serverUrl)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private static Entry getEntry(BuildParam buildParam) {
+        String key = CacheKeys.forCredentials(buildParam.getServerUrl(), buildParam.getTenant(),
+                buildParam.getUserName(), buildParam.getPassword());
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                ENTRIES.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    private static class Entry {
+        private final SingleFlight<WorkflowCatalog> catalog =
+                new SingleFlight<WorkflowCatalog>("the workflow catalog", REFRESHER);
+
+        WorkflowCatalog load(BuildParam buildParam) throws IOException {
+            return catalog.load(newLoader(buildParam));
+        }
+
+        void refreshInBackground(BuildParam buildParam) {
+            catalog.loadInBackground(newLoader(buildParam));
+        }
+
+        private static Callable<WorkflowCatalog> newLoader(final BuildParam buildParam) {
+            return new Callable<WorkflowCatalog>() {
+                @Override
+                public WorkflowCatalog call() throws Exception {
+                    final WorkflowCatalog loaded = new WorkflowCatalog();
+                    new OrchestratorClient(buildParam).fetchWorkflows(new OrchestratorClient.WorkflowHandler() {
+                        @Override
+                        public void handle(Workflow workflow) {
+                            loaded.add(workflow);
+                        }
+                    });
+                    return loaded;
+                }
+            };
+        }
+    }
+}
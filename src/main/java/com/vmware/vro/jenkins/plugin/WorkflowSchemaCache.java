@@ -0,0 +1,147 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+import com.vmware.vro.jenkins.plugin.model.WorkflowSchema;
+import com.vmware.vro.jenkins.plugin.util.CacheKeys;
+import com.vmware.vro.jenkins.plugin.util.DaemonThreadFactory;
+import com.vmware.vro.jenkins.plugin.util.SingleFlight;
+
+/**
+ * Caches the input parameters of each workflow by server, user and workflow id, so that the parameter rows of a job
+ * configuration page, the workflow name check and the build share one definition download.
+ * <p/>
+ * A schema is fresh for {@link #TTL_MILLIS}. After that and until {@link #STALE_MILLIS} it is still served while a
+ * single background load replaces it; older schemas are loaded again before being served, concurrent callers waiting
+ * for one shared load. At most {@link #MAX_SCHEMAS} schemas are kept, the least recently used one is evicted first.
+ */
+public final class WorkflowSchemaCache {
+    private static final String PROPERTY_PREFIX = WorkflowSchemaCache.class.getName() + ".";
+
+    static final long TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + "ttl", 5 * 60 * 1000L);
+    static final long STALE_MILLIS = Long.getLong(PROPERTY_PREFIX + "stale", 60 * 60 * 1000L);
+    static final int MAX_SCHEMAS = Integer.getInteger(PROPERTY_PREFIX + "maxSchemas", 1024);
+
+    private static final WorkflowSchema EMPTY = new WorkflowSchema(Collections.<Parameter>emptyList());
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_SCHEMAS;
+        }
+    };
+
+    private static final ExecutorService PREFETCHER = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("vRO workflow schema prefetcher"));
+
+    private WorkflowSchemaCache() {
+    }
+
+    /**
+     * Returns the input schema of the workflow whose id is set in the build param, or an empty schema when no id is
+     * set.
+     */
+    public static WorkflowSchema getSchema(BuildParam buildParam) throws IOException {
+        if (buildParam.getWorkflowName() == null) {
+            return EMPTY;
+        }
+        Entry entry = getEntry(buildParam);
+        WorkflowSchema schema = entry.schema.get();
+        if (schema != null) {
+            long age = System.currentTimeMillis() - schema.getLoadedAt();
+            if (age < TTL_MILLIS) {
+                return schema;
+            }
+            if (age < STALE_MILLIS) {
+                entry.loadInBackground(buildParam);
+                return schema;
+            }
+        }
+        return entry.load(buildParam);
+    }
+
+    /**
+     * Loads the schema again even if the cached one is fresh, used when the cached one lacks an expected input.
+     */
+    public static WorkflowSchema reload(BuildParam buildParam) throws IOException {
+        if (buildParam.getWorkflowName() == null) {
+            return EMPTY;
+        }
+        return getEntry(buildParam).load(buildParam);
+    }
+
+    /**
+     * Loads the schema in the background if it is not cached, so that a configuration page about to list the
+     * parameters finds it.
+     */
+    public static void prefetch(BuildParam buildParam) {
+        if (buildParam.getWorkflowName() == null) {
+            return;
+        }
+        Entry entry = getEntry(buildParam);
+        WorkflowSchema schema = entry.schema.get();
+        if (schema == null || System.currentTimeMillis() - schema.getLoadedAt() >= TTL_MILLIS) {
+            entry.loadInBackground(buildParam);
+        }
+    }
+
+    /**
+     * Drops every cached schema of the given server.
+     */
+    public static void invalidate(String serverUrl) {
+        synchronized (ENTRIES) {
+            Iterator<String> keys = ENTRIES.keySet().iterator();
+            while (keys.hasNext()) {
+                if (CacheKeys.isForServer(keys.next(), serverUrl)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private static Entry getEntry(BuildParam buildParam) {
+        String key = CacheKeys.forCredentials(buildParam.getServerUrl(), buildParam.getTenant(),
+                buildParam.getUserName(), buildParam.getPassword()) + '|' + buildParam.getWorkflowName();
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                ENTRIES.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    private static class Entry {
+        private final SingleFlight<WorkflowSchema> schema =
+                new SingleFlight<WorkflowSchema>("the workflow input parameters", PREFETCHER);
+
+        WorkflowSchema load(BuildParam buildParam) throws IOException {
+            return schema.load(newLoader(buildParam));
+        }
+
+        void loadInBackground(BuildParam buildParam) {
+            schema.loadInBackground(newLoader(buildParam));
+        }
+
+        private static Callable<WorkflowSchema> newLoader(final BuildParam buildParam) {
+            return new Callable<WorkflowSchema>() {
+                @Override
+                public WorkflowSchema call() throws Exception {
+                    return new WorkflowSchema(new OrchestratorClient(buildParam).fetchWorkflowInputParameters());
+                }
+            };
+        }
+    }
+}
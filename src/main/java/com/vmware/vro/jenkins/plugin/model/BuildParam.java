@@ -1,14 +1,20 @@
 package com.vmware.vro.jenkins.plugin.model;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
+import com.vmware.vro.jenkins.plugin.payload.PayloadEncoder;
+import com.vmware.vro.jenkins.plugin.util.BackoffPollingStrategy;
+import com.vmware.vro.jenkins.plugin.util.PollingStrategy;
 
 /**
  * Created by agovindaraju on 1/9/2016.
  */
-public class BuildParam {
+public class BuildParam implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final String serverUrl;
     private final String userName;
     private final String password;
@@ -16,11 +22,19 @@ public class BuildParam {
     private final String workflowName;
     private final boolean waitExec;
     private final List<Parameter> inputParams;
+    private final PollingStrategy pollingStrategy;
+    private final long waitTimeoutMillis;
+    private final PayloadEncoder payloadEncoder;
+    private final int requestTimeoutMillis;
 
     public BuildParam(String serverUrl, String userName, String password, String tenant,
                       String workflowName,
                       boolean waitExec,
-                      List<Parameter> inputParams) {
+                      List<Parameter> inputParams,
+                      PollingStrategy pollingStrategy,
+                      long waitTimeoutMillis,
+                      PayloadEncoder payloadEncoder,
+                      int requestTimeoutMillis) {
         this.serverUrl = serverUrl;
         this.userName = userName;
         this.password = password;
@@ -28,6 +42,41 @@ public class BuildParam {
         this.workflowName = workflowName;
         this.waitExec = waitExec;
         this.inputParams = inputParams;
+        this.pollingStrategy = pollingStrategy;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.payloadEncoder = payloadEncoder;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public BuildParam(String serverUrl, String userName, String password, String tenant,
+                      String workflowName,
+                      boolean waitExec,
+                      List<Parameter> inputParams,
+                      PollingStrategy pollingStrategy,
+                      long waitTimeoutMillis,
+                      PayloadEncoder payloadEncoder) {
+        this(serverUrl, userName, password, tenant, workflowName, waitExec, inputParams, pollingStrategy,
+                waitTimeoutMillis, payloadEncoder, 0);
+    }
+
+    public BuildParam(String serverUrl, String userName, String password, String tenant,
+                      String workflowName,
+                      boolean waitExec,
+                      List<Parameter> inputParams,
+                      PollingStrategy pollingStrategy,
+                      long waitTimeoutMillis) {
+        this(serverUrl, userName, password, tenant, workflowName, waitExec, inputParams, pollingStrategy,
+                waitTimeoutMillis, null);
+    }
+
+    public BuildParam(String serverUrl, String userName, String password, String tenant,
+                      String workflowName,
+                      boolean waitExec,
+                      List<Parameter> inputParams) {
+        this(serverUrl, userName, password, tenant, workflowName, waitExec, inputParams,
+                new BackoffPollingStrategy(BackoffPollingStrategy.DEFAULT_INITIAL_DELAY_SECONDS * 1000L,
+                        BackoffPollingStrategy.DEFAULT_FACTOR,
+                        BackoffPollingStrategy.DEFAULT_MAX_DELAY_SECONDS * 1000L), 0);
     }
 
     public BuildParam(String serverUrl, String userName, String password, String tenant,
@@ -63,6 +112,31 @@ public class BuildParam {
         return tenant;
     }
 
+    public PollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    /**
+     * Returns how long to wait for the execution to complete, 0 to wait without limit.
+     */
+    public long getWaitTimeoutMillis() {
+        return waitTimeoutMillis;
+    }
+
+    /**
+     * Returns the encoder compiled for the input parameters of the job, or null to compile one when needed.
+     */
+    public PayloadEncoder getPayloadEncoder() {
+        return payloadEncoder;
+    }
+
+    /**
+     * Returns the connect and read timeout of each REST call, 0 to use the defaults of the HTTP client pool.
+     */
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
     public Boolean validate() throws IOException {
         if (StringUtils.isBlank(this.getServerUrl())) {
             throw new IOException("Orchestrator server url cannot be empty");
@@ -0,0 +1,40 @@
+package com.vmware.vro.jenkins.plugin.model;
+
+/**
+ * One entry of the log of a workflow execution.
+ */
+public class ExecutionLogEntry {
+    private final long timestamp;
+    private final String time;
+    private final String severity;
+    private final String description;
+
+    public ExecutionLogEntry(long timestamp, String time, String severity, String description) {
+        this.timestamp = timestamp;
+        this.time = time;
+        this.severity = severity;
+        this.description = description;
+    }
+
+    /**
+     * Returns the time of the entry in milliseconds since the epoch, 0 if the server did not send it.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the time of the entry as formatted by the server.
+     */
+    public String getTime() {
+        return time;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
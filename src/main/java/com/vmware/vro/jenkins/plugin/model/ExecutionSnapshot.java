@@ -0,0 +1,122 @@
+package com.vmware.vro.jenkins.plugin.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the plugin reads from one GET of a workflow execution: its state, whether it completed, and once it
+ * did, its output parameters, dates and error.
+ */
+public class ExecutionSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String state;
+    private boolean completed;
+    //Null if the execution has no output-parameters array
+    private List<OutputParameter> outputs;
+    private String startDate;
+    private String endDate;
+    private String error;
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * Returns true if the execution completed without failing or being canceled.
+     */
+    public boolean isSuccessful() {
+        return completed && !"canceled".equalsIgnoreCase(state) && !"failed".equalsIgnoreCase(state);
+    }
+
+    /**
+     * Returns the output-parameters array as JSON, null if the execution has none. The JSON is built on each call.
+     */
+    public String getOutputParameters() throws IOException {
+        if (outputs == null) {
+            return null;
+        }
+        StringWriter writer = new StringWriter(getOutputParametersLength());
+        writeOutputParameters(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the output-parameters array as JSON, an empty array if the execution has none.
+     */
+    public void writeOutputParameters(Writer writer) throws IOException {
+        writer.write('[');
+        boolean first = true;
+        for (OutputParameter output : getOutputs()) {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(output.getJson());
+            first = false;
+        }
+        writer.write(']');
+    }
+
+    /**
+     * Returns the length of the JSON of {@link #getOutputParameters()}.
+     */
+    public int getOutputParametersLength() {
+        //The brackets and a comma between elements
+        int length = 1;
+        for (OutputParameter output : getOutputs()) {
+            length += output.getJson().length() + 1;
+        }
+        return Math.max(length, 2);
+    }
+
+    /**
+     * Returns the output parameters one by one, empty if the execution has none.
+     */
+    public List<OutputParameter> getOutputs() {
+        return outputs != null ? outputs : Collections.<OutputParameter>emptyList();
+    }
+
+    public void setOutputs(List<OutputParameter> outputs) {
+        this.outputs = outputs;
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(String startDate) {
+        this.startDate = startDate;
+    }
+
+    public String getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(String endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,93 @@
+package com.vmware.vro.jenkins.plugin.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.vmware.vro.jenkins.plugin.util.JsonStreams;
+
+/**
+ * One output parameter of a completed execution. Values of string, number, boolean and date parameters are their
+ * text, values of other types the JSON of their value object, such as {@code {"elements":[..]}} for an array.
+ * <p/>
+ * Only the JSON of the parameter, as the server sent it, is kept. The value is unwrapped from it when it is read.
+ */
+public class OutputParameter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final String VALUE = "value";
+
+    private final String name;
+    private final String type;
+    private final String json;
+    //Whether the value object holds a scalar {"value":x} rather than a JSON value
+    private final boolean scalar;
+
+    public OutputParameter(String name, String type, String json, boolean scalar) {
+        this.name = name;
+        this.type = type;
+        this.json = json;
+        this.scalar = scalar;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the JSON of the whole parameter, an element of the output-parameters array.
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Returns the value of the parameter, null if it has none.
+     */
+    public String getValue() throws IOException {
+        StringWriter writer = new StringWriter();
+        return writeValue(writer) ? writer.toString() : null;
+    }
+
+    /**
+     * Writes the value of the parameter to the writer, returns false if it has none.
+     */
+    public boolean writeValue(Writer writer) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!VALUE.equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            if (!reader.hasNext()) {
+                return false;
+            }
+            reader.nextName();
+            if (!scalar) {
+                JsonWriter jsonWriter = new JsonWriter(writer);
+                JsonStreams.copy(reader, jsonWriter);
+                jsonWriter.flush();
+                return true;
+            }
+            reader.beginObject();
+            while (!VALUE.equals(reader.nextName())) {
+                reader.skipValue();
+            }
+            writer.write(reader.peek() == JsonToken.BOOLEAN ? String.valueOf(reader.nextBoolean())
+                    : reader.nextString());
+            return true;
+        }
+        return false;
+    }
+}
@@ -12,7 +12,8 @@ import java.util.List;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.export.ExportedBean;
-import com.vmware.vro.jenkins.plugin.OrchestratorClient;
+import com.vmware.vro.jenkins.plugin.WorkflowCatalogCache;
+import com.vmware.vro.jenkins.plugin.WorkflowSchemaCache;
 import hudson.Extension;
 import hudson.RelativePath;
 import hudson.model.AbstractDescribableImpl;
@@ -78,24 +79,15 @@ public class Parameter extends AbstractDescribableImpl<Parameter> implements Ser
                 URISyntaxException {
 
             BuildParam listWorkflowBuildParam = new BuildParam(serverUrl, userName, password, tenant, null);
-            OrchestratorClient listWfClient = new OrchestratorClient(listWorkflowBuildParam);
-            List<Workflow> workflows = listWfClient.fetchWorkflows();
-            String workflowId = null;
-            for (Workflow workflow : workflows) {
-                if (workflow.getName().equals(workflowName)) {
-                    workflowId = workflow.getId();
-                    break;
-                }
-            }
+            Workflow workflow = WorkflowCatalogCache.findWorkflowByName(listWorkflowBuildParam, workflowName);
+            String workflowId = workflow != null ? workflow.getId() : null;
 
+            //Every parameter row of the page asks for the same schema, only the first one downloads it
             BuildParam buildParam = new BuildParam(serverUrl, userName, password, tenant, workflowId);
-            OrchestratorClient client = new OrchestratorClient(buildParam);
-            List<Parameter> parameters = client.fetchWorkflowInputParameters();
-            List<ListBoxModel.Option> options = new ArrayList<ListBoxModel.Option>(parameters.size());
-            for (Parameter parameter : parameters) {
-                String paramDisplayName = String.format("%s@%s", parameter.getName(), parameter.getType());
-                options.add(new ListBoxModel.Option(paramDisplayName, paramDisplayName,
-                        paramDisplayName.matches(name)));
+            List<String> inputKeys = WorkflowSchemaCache.getSchema(buildParam).getInputKeys();
+            List<ListBoxModel.Option> options = new ArrayList<ListBoxModel.Option>(inputKeys.size());
+            for (String inputKey : inputKeys) {
+                options.add(new ListBoxModel.Option(inputKey, inputKey, inputKey.equals(name)));
             }
             ListBoxModel listBoxModel = new ListBoxModel(options);
             return listBoxModel;
@@ -0,0 +1,64 @@
+package com.vmware.vro.jenkins.plugin.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the workflows of a server, indexed by name and by id.
+ * <p/>
+ * Workflow names are not unique in Orchestrator, the first workflow listed with a name wins, like the lookups that
+ * scanned the list did.
+ */
+public class WorkflowCatalog {
+    private final Map<String, Workflow> workflowsByName;
+    private final Map<String, Workflow> workflowsById;
+    private final long loadedAt;
+
+    public WorkflowCatalog() {
+        this.workflowsByName = new HashMap<String, Workflow>();
+        this.workflowsById = new HashMap<String, Workflow>();
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public WorkflowCatalog(List<Workflow> workflows) {
+        this();
+        for (Workflow workflow : workflows) {
+            add(workflow);
+        }
+    }
+
+    /**
+     * Indexes a workflow while the catalog is being loaded. A catalog must not be changed once it is published.
+     */
+    public void add(Workflow workflow) {
+        if (workflow.getName() != null && !workflowsByName.containsKey(workflow.getName())) {
+            workflowsByName.put(workflow.getName(), workflow);
+        }
+        if (workflow.getId() != null) {
+            workflowsById.put(workflow.getId(), workflow);
+        }
+    }
+
+    public Workflow getByName(String name) {
+        return workflowsByName.get(name);
+    }
+
+    public Workflow getById(String id) {
+        return workflowsById.get(id);
+    }
+
+    public Collection<Workflow> getWorkflows() {
+        return Collections.unmodifiableCollection(workflowsById.values());
+    }
+
+    public int size() {
+        return workflowsById.size();
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+}
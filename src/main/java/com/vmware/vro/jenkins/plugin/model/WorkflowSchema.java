@@ -0,0 +1,48 @@
+package com.vmware.vro.jenkins.plugin.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Snapshot of the input parameters declared by a workflow, with their "name@type" keys as selected in the job
+ * configuration.
+ */
+public class WorkflowSchema {
+    private final List<Parameter> inputParameters;
+    private final List<String> inputKeys;
+    private final Set<String> inputKeySet;
+    private final long loadedAt;
+
+    public WorkflowSchema(List<Parameter> inputParameters) {
+        List<String> keys = new ArrayList<String>(inputParameters.size());
+        for (Parameter parameter : inputParameters) {
+            keys.add(String.format("%s@%s", parameter.getName(), parameter.getType()));
+        }
+        this.inputParameters = Collections.unmodifiableList(new ArrayList<Parameter>(inputParameters));
+        this.inputKeys = Collections.unmodifiableList(keys);
+        this.inputKeySet = new HashSet<String>(keys);
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public List<Parameter> getInputParameters() {
+        return inputParameters;
+    }
+
+    /**
+     * Returns the "name@type" keys of the input parameters in the order the workflow declares them.
+     */
+    public List<String> getInputKeys() {
+        return inputKeys;
+    }
+
+    public boolean hasInput(String key) {
+        return inputKeySet.contains(key);
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+}
@@ -0,0 +1,103 @@
+package com.vmware.vro.jenkins.plugin.payload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+
+/**
+ * Writes the execution request payload {@code {"parameters":[{"name":..,"type":..,"value":{..}}]}} of a list of
+ * input parameters.
+ * <p/>
+ * The "name@type" keys of the parameters are split and their types compiled into {@link ValueEncoder}s once, so a
+ * job compiles its encoder when its configuration is loaded and every build only streams the values.
+ */
+public final class PayloadEncoder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] keys;
+    private final String[] names;
+    private final String[] types;
+    private final ValueEncoder[] encoders;
+
+    private PayloadEncoder(String[] keys, String[] names, String[] types, ValueEncoder[] encoders) {
+        this.keys = keys;
+        this.names = names;
+        this.types = types;
+        this.encoders = encoders;
+    }
+
+    /**
+     * Compiles the encoder of the given parameters, whose names are "name@type" as selected in the job
+     * configuration. A name without a type is sent as a string.
+     */
+    public static PayloadEncoder compile(List<Parameter> parameters) {
+        int size = parameters.size();
+        String[] keys = new String[size];
+        String[] names = new String[size];
+        String[] types = new String[size];
+        ValueEncoder[] encoders = new ValueEncoder[size];
+        for (int i = 0; i < size; i++) {
+            String key = parameters.get(i).getName();
+            int index = key.indexOf('@');
+            keys[i] = key;
+            names[i] = index < 0 ? key : key.substring(0, index);
+            types[i] = index < 0 ? "string" : key.substring(index + 1);
+            encoders[i] = ValueEncoders.compile(types[i]);
+        }
+        return new PayloadEncoder(keys, names, types, encoders);
+    }
+
+    /**
+     * Returns true if this encoder was compiled for parameters with the same names and types, in the same order.
+     */
+    public boolean isCompiledFor(List<Parameter> parameters) {
+        if (parameters.size() != keys.length) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (!keys[i].equals(parameters.get(i).getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the payload of the parameter values, which must match the compiled parameters.
+     */
+    public void write(JsonWriter writer, List<Parameter> parameters) throws IOException {
+        writer.beginObject();
+        writer.name("parameters").beginArray();
+        for (int i = 0; i < keys.length; i++) {
+            writer.beginObject();
+            writer.name("name").value(names[i]);
+            writer.name("type").value(types[i]);
+            writer.name("value");
+            encoders[i].write(writer, parameters.get(i).getValue());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    public void writeTo(OutputStream out, List<Parameter> parameters) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        write(jsonWriter, parameters);
+        jsonWriter.flush();
+    }
+
+    public String toJson(List<Parameter> parameters) throws IOException {
+        StringWriter writer = new StringWriter();
+        write(new JsonWriter(writer), parameters);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.vmware.vro.jenkins.plugin.payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+
+/**
+ * Request entity that encodes the execution payload straight into the connection. It is written again when the
+ * request is retried, so it is repeatable.
+ */
+public class PayloadEntity extends AbstractHttpEntity {
+    private final PayloadEncoder encoder;
+    private final List<Parameter> parameters;
+
+    public PayloadEntity(PayloadEncoder encoder, List<Parameter> parameters) {
+        this.encoder = encoder;
+        this.parameters = parameters;
+        setContentType("application/json");
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new ByteArrayInputStream(encoder.toJson(parameters).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        encoder.writeTo(out, parameters);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
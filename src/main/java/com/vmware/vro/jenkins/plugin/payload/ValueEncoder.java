@@ -0,0 +1,62 @@
+package com.vmware.vro.jenkins.plugin.payload;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.vmware.vro.jenkins.plugin.util.JsonStreams;
+
+/**
+ * Writes the value object of one vRO type, such as {@code {"string":{"value":"x"}}}, straight to a
+ * {@link JsonWriter}. Encoders are compiled once from the type name by {@link ValueEncoders#compile(String)}.
+ */
+public abstract class ValueEncoder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Writes the value object of a parameter value as entered in the job configuration.
+     */
+    public abstract void write(JsonWriter writer, String value) throws IOException;
+
+    /**
+     * Writes the value object of the next value of the reader, an element nested in an array, properties or
+     * composite value.
+     */
+    public abstract void write(JsonWriter writer, JsonReader reader) throws IOException;
+
+    /**
+     * Reads the text of a nested scalar value, or its JSON when it is not a scalar.
+     */
+    static String nextString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                StringWriter json = new StringWriter();
+                JsonWriter jsonWriter = new JsonWriter(json);
+                JsonStreams.copy(reader, jsonWriter);
+                jsonWriter.flush();
+                return json.toString();
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * Skips the next value of the reader and returns false unless it is of the given kind.
+     */
+    static boolean expect(JsonReader reader, JsonToken token) throws IOException {
+        if (reader.peek() == token) {
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+}
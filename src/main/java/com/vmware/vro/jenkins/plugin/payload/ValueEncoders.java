@@ -0,0 +1,523 @@
+package com.vmware.vro.jenkins.plugin.payload;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Compiles vRO type names into {@link ValueEncoder}s.
+ * <p/>
+ * Scalar values are written as entered. Array values are entered as a JSON array or a comma separated list,
+ * Properties as a JSON object or comma separated key=value pairs, composite and MimeAttachment values as a JSON
+ * object. In the lists, a comma that is part of a value is escaped as {@code \,}. Any type that is not known is sent
+ * as an sdk-object whose id is the value.
+ * <p/>
+ * JSON values are read token by token and encoded as they are read, without building a tree of them.
+ */
+public final class ValueEncoders {
+    private static final String VALUE = "value";
+    private static final String ARRAY_PREFIX = "array/";
+    private static final String COMPOSITE_PREFIX = "compositetype(";
+
+    private static final ValueEncoder STRING = new ScalarEncoder("string");
+    private static final ValueEncoder NUMBER = new NumberEncoder();
+    private static final ValueEncoder BOOLEAN = new BooleanEncoder();
+    private static final ValueEncoder DATE = new ScalarEncoder("date");
+    private static final ValueEncoder REGEX = new ScalarEncoder("regex");
+    private static final ValueEncoder PROPERTIES = new PropertiesEncoder();
+    private static final ValueEncoder MIME_ATTACHMENT = new MimeAttachmentEncoder();
+    private static final ValueEncoder ANY = new AnyEncoder();
+
+    private ValueEncoders() {
+    }
+
+    /**
+     * Returns the encoder of the given type, such as "string", "Array/number", "Properties",
+     * "CompositeType(name:string,size:number):Disk" or "VC:VirtualMachine".
+     */
+    public static ValueEncoder compile(String type) {
+        String lowerCaseType = type.trim().toLowerCase(Locale.ENGLISH);
+        if ("string".equals(lowerCaseType) || "securestring".equals(lowerCaseType)
+                || "encryptedstring".equals(lowerCaseType)) {
+            return STRING;
+        } else if ("number".equals(lowerCaseType)) {
+            return NUMBER;
+        } else if ("boolean".equals(lowerCaseType)) {
+            return BOOLEAN;
+        } else if ("date".equals(lowerCaseType)) {
+            return DATE;
+        } else if ("regex".equals(lowerCaseType)) {
+            return REGEX;
+        } else if ("properties".equals(lowerCaseType)) {
+            return PROPERTIES;
+        } else if ("mimeattachment".equals(lowerCaseType)) {
+            return MIME_ATTACHMENT;
+        } else if ("any".equals(lowerCaseType)) {
+            return ANY;
+        } else if (lowerCaseType.startsWith(ARRAY_PREFIX)) {
+            return new ArrayEncoder(compile(type.trim().substring(ARRAY_PREFIX.length())));
+        } else if (lowerCaseType.startsWith(COMPOSITE_PREFIX)) {
+            return compileComposite(type.trim());
+        }
+        return new SdkObjectEncoder(type.trim());
+    }
+
+    /*
+     * Splits "CompositeType(id:type,...):Name" into its fields. Field types may be composite themselves, so only
+     * commas outside of parentheses separate fields.
+     */
+    private static ValueEncoder compileComposite(String type) {
+        int close = findClosingParenthesis(type, COMPOSITE_PREFIX.length() - 1);
+        List<String> ids = new ArrayList<String>();
+        List<ValueEncoder> encoders = new ArrayList<ValueEncoder>();
+        for (String field : splitTopLevel(type.substring(COMPOSITE_PREFIX.length(), close))) {
+            int colon = field.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalid field " + field + " in " + type);
+            }
+            ids.add(field.substring(0, colon).trim());
+            encoders.add(compile(field.substring(colon + 1)));
+        }
+        return new CompositeEncoder(type, ids.toArray(new String[ids.size()]),
+                encoders.toArray(new ValueEncoder[encoders.size()]));
+    }
+
+    private static int findClosingParenthesis(String type, int open) {
+        int depth = 0;
+        for (int i = open; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unbalanced parentheses in " + type);
+    }
+
+    private static List<String> splitTopLevel(String fields) {
+        List<String> result = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < fields.length(); i++) {
+            char c = fields.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                result.add(fields.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (start < fields.length()) {
+            result.add(fields.substring(start));
+        }
+        return result;
+    }
+
+    /*
+     * Encodes a value entered as JSON.
+     */
+    private static void writeJson(ValueEncoder encoder, JsonWriter writer, String value, String type)
+            throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(value));
+        reader.setLenient(true);
+        try {
+            encoder.write(writer, reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new MalformedJsonException("Did not consume the entire document");
+            }
+        } catch (MalformedJsonException e) {
+            throw new IllegalArgumentException("Invalid " + type + " value " + value + " : " + e.getMessage(), e);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Invalid " + type + " value " + value + " : " + e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid " + type + " value " + value + " : " + e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Splits a comma separated list on the commas that are not escaped as \,. Other backslashes are kept as they are,
+     * so that Windows paths need no escaping.
+     */
+    private static List<String> splitList(String value) {
+        List<String> result = new ArrayList<String>();
+        StringBuilder item = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length() && value.charAt(i + 1) == ',') {
+                item.append(',');
+                i++;
+            } else if (c == ',') {
+                result.add(item.toString());
+                item.setLength(0);
+            } else {
+                item.append(c);
+            }
+        }
+        result.add(item.toString());
+        //Like String#split, trailing empty items are dropped
+        while (result.size() > 1 && result.get(result.size() - 1).isEmpty()) {
+            result.remove(result.size() - 1);
+        }
+        return result;
+    }
+
+    private static boolean startsWith(String value, char c) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isWhitespace(value.charAt(i))) {
+                return value.charAt(i) == c;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Writes {"<key>":{"value":"..."}}.
+     */
+    private static class ScalarEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+
+        ScalarEncoder(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            writer.beginObject();
+            writer.name(key).beginObject();
+            writer.name(VALUE);
+            writeValue(writer, value);
+            writer.endObject();
+            writer.endObject();
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            write(writer, nextString(reader));
+        }
+
+        void writeValue(JsonWriter writer, String value) throws IOException {
+            writer.value(value);
+        }
+    }
+
+    private static class NumberEncoder extends ScalarEncoder {
+        private static final long serialVersionUID = 1L;
+
+        NumberEncoder() {
+            super("number");
+        }
+
+        @Override
+        void writeValue(JsonWriter writer, String value) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+                return;
+            }
+            try {
+                writer.value(new BigDecimal(value.trim()));
+            } catch (NumberFormatException e) {
+                //Leave the validation to the server, as before
+                writer.value(value);
+            }
+        }
+    }
+
+    private static class BooleanEncoder extends ScalarEncoder {
+        private static final long serialVersionUID = 1L;
+
+        BooleanEncoder() {
+            super("boolean");
+        }
+
+        @Override
+        void writeValue(JsonWriter writer, String value) throws IOException {
+            if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                writer.value(Boolean.parseBoolean(value));
+            } else {
+                writer.value(value);
+            }
+        }
+    }
+
+    /*
+     * Writes {"sdk-object":{"id":"...","type":"..."}}.
+     */
+    private static class SdkObjectEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+
+        SdkObjectEncoder(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            writer.beginObject();
+            writer.name("sdk-object").beginObject();
+            writer.name("id").value(value);
+            writer.name("type").value(type);
+            writer.endObject();
+            writer.endObject();
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            write(writer, nextString(reader));
+        }
+    }
+
+    /*
+     * Writes {"array":{"elements":[...]}} with the value object of each element.
+     */
+    private static class ArrayEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+
+        private final ValueEncoder elementEncoder;
+
+        ArrayEncoder(ValueEncoder elementEncoder) {
+            this.elementEncoder = elementEncoder;
+        }
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            if (value != null && startsWith(value, '[')) {
+                writeJson(this, writer, value, "array");
+                return;
+            }
+            writer.beginObject();
+            writer.name("array").beginObject();
+            writer.name("elements").beginArray();
+            if (value != null) {
+                for (String element : splitList(value)) {
+                    elementEncoder.write(writer, element.trim());
+                }
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            writer.beginObject();
+            writer.name("array").beginObject();
+            writer.name("elements").beginArray();
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    elementEncoder.write(writer, reader);
+                }
+                reader.endArray();
+            } else if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                elementEncoder.write(writer, reader);
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+
+    /*
+     * Writes {"properties":{"property":[{"key":"...","value":{...}}]}}, the type of each value is inferred.
+     */
+    private static class PropertiesEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            if (value != null && startsWith(value, '{')) {
+                writeJson(this, writer, value, "Properties");
+                return;
+            }
+            writer.beginObject();
+            writer.name("properties").beginObject();
+            writer.name("property").beginArray();
+            if (value != null) {
+                for (String pair : splitList(value)) {
+                    int equals = pair.indexOf('=');
+                    if (equals < 0) {
+                        throw new IllegalArgumentException("Invalid Properties entry " + pair
+                                + ", expected key=value");
+                    }
+                    writer.beginObject();
+                    writer.name("key").value(pair.substring(0, equals).trim());
+                    writer.name(VALUE);
+                    STRING.write(writer, pair.substring(equals + 1).trim());
+                    writer.endObject();
+                }
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            writer.beginObject();
+            writer.name("properties").beginObject();
+            writer.name("property").beginArray();
+            if (expect(reader, JsonToken.BEGIN_OBJECT)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    writer.beginObject();
+                    writer.name("key").value(reader.nextName());
+                    writer.name(VALUE);
+                    ANY.write(writer, reader);
+                    writer.endObject();
+                }
+                reader.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+
+    /*
+     * Writes {"composite":{"type":"...","property":[{"id":"...","value":{...}}]}} from a JSON object keyed by the
+     * field ids, in the order of the object. Fields missing from the value and unknown keys are left out.
+     */
+    private static class CompositeEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+        private final String[] ids;
+        private final ValueEncoder[] encoders;
+
+        CompositeEncoder(String type, String[] ids, ValueEncoder[] encoders) {
+            this.type = type;
+            this.ids = ids;
+            this.encoders = encoders;
+        }
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            writeJson(this, writer, value != null ? value : "{}", type);
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            writer.beginObject();
+            writer.name("composite").beginObject();
+            writer.name("type").value(type);
+            writer.name("property").beginArray();
+            if (expect(reader, JsonToken.BEGIN_OBJECT)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    int field = indexOf(reader.nextName());
+                    if (field < 0) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    writer.beginObject();
+                    writer.name("id").value(ids[field]);
+                    writer.name(VALUE);
+                    encoders[field].write(writer, reader);
+                    writer.endObject();
+                }
+                reader.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        }
+
+        private int indexOf(String id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals(id)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /*
+     * Writes {"mime-attachment":{"name":"...","mime-type":"...","content":"<base64>"}} from a JSON object with the
+     * same keys.
+     */
+    private static class MimeAttachmentEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+        private static final String[] KEYS = {"name", "mime-type", "content"};
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            writeJson(this, writer, value != null ? value : "{}", "MimeAttachment");
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            writer.beginObject();
+            writer.name("mime-attachment").beginObject();
+            if (expect(reader, JsonToken.BEGIN_OBJECT)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (Arrays.asList(KEYS).contains(key)) {
+                        writer.name(key).value(nextString(reader));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+
+    /*
+     * Infers the type of nested values of Properties and Array/Any: JSON numbers, booleans, arrays and objects
+     * become number, boolean, array and properties values, anything else a string.
+     */
+    private static class AnyEncoder extends ValueEncoder {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void write(JsonWriter writer, String value) throws IOException {
+            if (value != null && (startsWith(value, '[') || startsWith(value, '{'))) {
+                writeJson(this, writer, value, "Any");
+            } else {
+                STRING.write(writer, value);
+            }
+        }
+
+        @Override
+        public void write(JsonWriter writer, JsonReader reader) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_ARRAY:
+                    new ArrayEncoder(this).write(writer, reader);
+                    break;
+                case BEGIN_OBJECT:
+                    PROPERTIES.write(writer, reader);
+                    break;
+                case NUMBER:
+                    NUMBER.write(writer, reader);
+                    break;
+                case BOOLEAN:
+                    BOOLEAN.write(writer, reader);
+                    break;
+                default:
+                    STRING.write(writer, reader);
+            }
+        }
+    }
+}
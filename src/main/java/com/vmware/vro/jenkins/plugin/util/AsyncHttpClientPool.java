@@ -0,0 +1,137 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContextBuilder;
+
+/**
+ * Holds one started, pooled {@link CloseableHttpAsyncClient} per Orchestrator server and trust setting, the
+ * non-blocking counterpart of {@link HttpClientPool}.
+ * <p/>
+ * Requests are multiplexed over the keep-alive connections of the pool by a few I/O reactor threads, so in-flight
+ * requests do not hold a thread each. The pools share the connection limits and timeouts of {@link HttpClientPool};
+ * the number of I/O threads of each client is set with the system property
+ * {@code com.vmware.vro.jenkins.plugin.util.AsyncHttpClientPool.ioThreads}.
+ */
+public final class AsyncHttpClientPool {
+
+    private static final String PROPERTY_PREFIX = AsyncHttpClientPool.class.getName() + ".";
+
+    static final int IO_THREADS = Integer.getInteger(PROPERTY_PREFIX + "ioThreads", 2);
+
+    private static final ConcurrentMap<String, CloseableHttpAsyncClient> CLIENTS =
+            new ConcurrentHashMap<String, CloseableHttpAsyncClient>();
+
+    //The async connection managers have no idle eviction of their own
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("vRO async connection evictor"));
+
+    private AsyncHttpClientPool() {
+    }
+
+    /**
+     * Returns the shared, started client for the server of the given url, creating it on first use.
+     */
+    public static CloseableHttpAsyncClient getClient(String serverUrl, boolean trustSelfSigned)
+            throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException {
+        String key = getPoolKey(serverUrl, trustSelfSigned);
+        CloseableHttpAsyncClient client = CLIENTS.get(key);
+        if (client == null) {
+            synchronized (CLIENTS) {
+                client = CLIENTS.get(key);
+                if (client == null) {
+                    client = createClient(trustSelfSigned);
+                    client.start();
+                    CLIENTS.put(key, client);
+                }
+            }
+        }
+        return client;
+    }
+
+    private static String getPoolKey(String serverUrl, boolean trustSelfSigned) throws MalformedURLException {
+        URL url = new URL(serverUrl);
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return String.format("%s://%s:%d|%s", url.getProtocol().toLowerCase(Locale.ENGLISH),
+                url.getHost().toLowerCase(Locale.ENGLISH), port, trustSelfSigned);
+    }
+
+    private static CloseableHttpAsyncClient createClient(boolean trustSelfSigned)
+            throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOReactorException {
+        SSLContextBuilder builder = new SSLContextBuilder();
+        if (trustSelfSigned) {
+            builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
+        }
+        Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(builder.build()))
+                .build();
+
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(Math.max(IO_THREADS, 1))
+                .setConnectTimeout(HttpClientPool.CONNECT_TIMEOUT_MILLIS)
+                .setSoTimeout(HttpClientPool.SOCKET_TIMEOUT_MILLIS)
+                .build();
+        final PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(reactorConfig, new DaemonThreadFactory("vRO async I/O")), registry);
+        connectionManager.setDefaultMaxPerRoute(HttpClientPool.MAX_PER_ROUTE);
+        connectionManager.setMaxTotal(HttpClientPool.MAX_TOTAL);
+        EVICTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(HttpClientPool.IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }, HttpClientPool.IDLE_TIMEOUT_MILLIS, HttpClientPool.IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        return HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(HttpClientPool.createRequestConfig())
+                .setKeepAliveStrategy(new BoundedKeepAliveStrategy())
+                .setThreadFactory(new DaemonThreadFactory("vRO async dispatcher"))
+                .build();
+    }
+
+    /*
+     * Same bound on the server's Keep-Alive header as the blocking pool.
+     */
+    private static class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+        private final ConnectionKeepAliveStrategy delegate = DefaultConnectionKeepAliveStrategy.INSTANCE;
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = delegate.getKeepAliveDuration(response, context);
+            if (duration <= 0 || duration > HttpClientPool.IDLE_TIMEOUT_MILLIS) {
+                return HttpClientPool.IDLE_TIMEOUT_MILLIS;
+            }
+            return duration;
+        }
+    }
+}
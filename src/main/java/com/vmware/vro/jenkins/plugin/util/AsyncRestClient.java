@@ -0,0 +1,201 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * The non-blocking counterpart of {@link RestClient} for the execution polls, sending its requests through the
+ * {@link AsyncHttpClientPool}. A request in flight holds no thread: the returned future and its callback complete on
+ * the I/O threads of the pool, so callbacks must not block. Errors, including a failed login, are reported through the
+ * future.
+ * <p/>
+ * Requests go through the circuit breaker and retry policy of the server like the blocking ones, and a token rejected
+ * with 401 is renewed once. Retries wait on a shared scheduler instead of a sleeping thread, which also runs the
+ * logins, as they use the blocking client. Response bodies are received in full before they are decoded.
+ */
+public class AsyncRestClient {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("vRO async request scheduler"));
+
+    private final String serverUrl;
+    private final int requestTimeoutMillis;
+    //Provides the auth headers and decodes the responses
+    private final RestClient restClient;
+
+    /**
+     * Creates a client sending the requests of the given blocking client, with its server, credentials and timeout.
+     */
+    public AsyncRestClient(RestClient restClient) {
+        this.serverUrl = restClient.getServerUrl();
+        this.requestTimeoutMillis = restClient.getRequestTimeoutMillis();
+        this.restClient = restClient;
+    }
+
+    /**
+     * Performs an HttpGet and completes the future with the response body decoded by the given reader.
+     */
+    public <T> Future<T> httpGet(String requestUrl, ResponseReader<T> responseReader, FutureCallback<T> callback) {
+        ExchangeFuture<T> future = new ExchangeFuture<T>(callback);
+        HttpGet httpGet;
+        try {
+            httpGet = new HttpGet(new URL(requestUrl).toURI());
+        } catch (Exception e) {
+            future.failed(e);
+            return future;
+        }
+        if (requestTimeoutMillis > 0) {
+            httpGet.setConfig(HttpClientPool.getRequestConfig(requestTimeoutMillis));
+        }
+        new Exchange<T>(httpGet, responseReader, future).send();
+        return future;
+    }
+
+    /*
+     * Cancelling the future also aborts the request in flight.
+     */
+    private static final class ExchangeFuture<T> extends BasicFuture<T> {
+        private volatile Future<HttpResponse> pending;
+
+        ExchangeFuture(FutureCallback<T> callback) {
+            super(callback);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<HttpResponse> request = pending;
+            if (cancelled && request != null) {
+                request.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+
+    /*
+     * One request and its retries, the asynchronous form of the loop of RestClient#executeRequest.
+     */
+    private final class Exchange<T> implements FutureCallback<HttpResponse> {
+        private final HttpGet request;
+        private final ResponseReader<T> responseReader;
+        private final ExchangeFuture<T> future;
+        private final String method;
+        private final String requestUrl;
+        private final CircuitBreaker breaker = CircuitBreaker.forServer(serverUrl);
+        private Map<String, String> headers;
+        private boolean reauthenticated;
+        private int retry;
+        private long start;
+        private long callId;
+
+        Exchange(HttpGet request, ResponseReader<T> responseReader, ExchangeFuture<T> future) {
+            this.request = request;
+            this.responseReader = responseReader;
+            this.future = future;
+            this.method = request.getMethod();
+            this.requestUrl = request.getURI().toString();
+        }
+
+        void send() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                if (headers == null) {
+                    headers = restClient.getRequestHeaders();
+                    for (Map.Entry<String, String> entry : headers.entrySet()) {
+                        request.setHeader(entry.getKey(), entry.getValue());
+                    }
+                }
+                callId = breaker.acquire();
+                start = System.nanoTime();
+                future.pending = AsyncHttpClientPool.getClient(serverUrl, true).execute(request, this);
+            } catch (Exception e) {
+                future.failed(e);
+            }
+        }
+
+        private void sendLater(long delayMillis) {
+            SCHEDULER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private boolean isLastAttempt() {
+            return retry >= RetryPolicy.MAX_RETRIES;
+        }
+
+        private void retryLater(String reason, long delayMillis) {
+            retry++;
+            OrchestratorMetrics.recordRetry(serverUrl, method, reason);
+            sendLater(delayMillis);
+        }
+
+        @Override
+        public void completed(HttpResponse response) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            OrchestratorMetrics.recordRequest(serverUrl, method, requestUrl, String.valueOf(statusCode),
+                    System.nanoTime() - start);
+            if (!RetryPolicy.isTransientStatus(statusCode)) {
+                breaker.recordSuccess(callId);
+                if (statusCode == HttpStatus.SC_UNAUTHORIZED && !reauthenticated && restClient.isTokenAuth()) {
+                    reauthenticated = true;
+                    restClient.invalidateToken(headers);
+                    headers = null;
+                    //The login blocks, it must not run on an I/O thread
+                    sendLater(0);
+                    return;
+                }
+                deliver(response);
+                return;
+            }
+            breaker.recordFailure(callId);
+            long delay = isLastAttempt() || !RetryPolicy.isRetryable(statusCode, true) ? -1
+                    : RetryPolicy.getDelayMillis(retry, RetryPolicy.getRetryAfterMillis(response));
+            if (delay < 0) {
+                deliver(response);
+                return;
+            }
+            retryLater(String.valueOf(statusCode), delay);
+        }
+
+        @Override
+        public void failed(Exception e) {
+            OrchestratorMetrics.recordRequest(serverUrl, method, requestUrl, "error", System.nanoTime() - start);
+            breaker.recordFailure(callId);
+            if (isLastAttempt() || !(e instanceof IOException)
+                    || !RetryPolicy.isRetryable((IOException) e, true)) {
+                future.failed(e);
+                return;
+            }
+            retryLater("error", RetryPolicy.getDelayMillis(retry, -1));
+        }
+
+        @Override
+        public void cancelled() {
+            future.cancel(true);
+        }
+
+        private void deliver(HttpResponse response) {
+            try {
+                future.completed(restClient.parseResponse(response, responseReader));
+            } catch (Exception e) {
+                future.failed(e);
+            }
+        }
+    }
+}
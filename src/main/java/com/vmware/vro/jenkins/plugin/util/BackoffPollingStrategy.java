@@ -0,0 +1,48 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polls quickly at first and then backs off exponentially up to a cap, so that short workflows are noticed early and
+ * long ones are polled rarely. Each delay is randomized by up to {@link #JITTER} in either direction so that builds
+ * started together do not poll the server in lockstep.
+ */
+public class BackoffPollingStrategy implements PollingStrategy {
+    public static final int DEFAULT_INITIAL_DELAY_SECONDS = 2;
+    public static final double DEFAULT_FACTOR = 1.5;
+    public static final int DEFAULT_MAX_DELAY_SECONDS = 30;
+
+    static final double JITTER = 0.2;
+
+    private final long initialDelayMillis;
+    private final double factor;
+    private final long maxDelayMillis;
+
+    public BackoffPollingStrategy(long initialDelayMillis, double factor, long maxDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+        this.factor = factor;
+        this.maxDelayMillis = Math.max(initialDelayMillis, maxDelayMillis);
+    }
+
+    @Override
+    public long getDelayMillis(int poll) {
+        double delay = initialDelayMillis * Math.pow(factor, poll);
+        if (delay > maxDelayMillis || Double.isInfinite(delay)) {
+            delay = maxDelayMillis;
+        }
+        double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.round(delay * jitter);
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+}
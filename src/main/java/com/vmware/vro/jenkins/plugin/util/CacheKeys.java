@@ -0,0 +1,48 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Builds the keys of the per-server caches. Only a digest of the password is used, so that a credential change
+ * misses the cache without the secret being held by it.
+ */
+public final class CacheKeys {
+
+    private CacheKeys() {
+    }
+
+    /**
+     * Key of data that is shared by every login of the same user on a server.
+     */
+    public static String forUser(String serverUrl, String tenant, String userName) {
+        return serverUrl + '|' + tenant + '|' + userName;
+    }
+
+    /**
+     * Key of data that must only be served to callers presenting the same credentials.
+     */
+    public static String forCredentials(String serverUrl, String tenant, String userName, String password) {
+        return forUser(serverUrl, tenant, userName) + '|' + digest(password);
+    }
+
+    /**
+     * Returns true if the key belongs to the given server.
+     */
+    public static boolean isForServer(String key, String serverUrl) {
+        return key.startsWith(serverUrl + '|');
+    }
+
+    public static String digest(String password) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = messageDigest.digest(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return new String(Hex.encodeHex(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops the requests of every build to an Orchestrator server that keeps failing, so that an overloaded server gets
+ * relief instead of a retry storm.
+ * <p/>
+ * The breaker of a server opens after {@link #FAILURE_THRESHOLD} failed calls in a row, a failure being a connection
+ * error or a 429, 502, 503 or 504 response. While it is open requests fail right away with a
+ * {@link ServerUnavailableException}. After {@link #OPEN_MILLIS} it is half-open and lets a single probe through: the
+ * breaker closes if the probe succeeds and opens again if it fails. Use the prefix
+ * {@code com.vmware.vro.jenkins.plugin.util.CircuitBreaker.} for the system properties.
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    private static final String PROPERTY_PREFIX = CircuitBreaker.class.getName() + ".";
+
+    static final int FAILURE_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + "failureThreshold", 5);
+    static final long OPEN_MILLIS = Long.getLong(PROPERTY_PREFIX + "openDuration", 30000L);
+
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS =
+            new ConcurrentHashMap<String, CircuitBreaker>();
+
+    /**
+     * States of a breaker, the ordinal is the value of the state gauge.
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String serverUrl;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long probeStartedAt;
+    //Id of the call probing the half-open breaker, 0 when no probe is running
+    private long probeId;
+    private long lastProbeId;
+
+    private CircuitBreaker(String serverUrl) {
+        this.serverUrl = serverUrl;
+    }
+
+    /**
+     * Returns the breaker shared by every client of the given server in this JVM.
+     */
+    public static CircuitBreaker forServer(String serverUrl) {
+        CircuitBreaker breaker = BREAKERS.get(serverUrl);
+        if (breaker == null) {
+            CircuitBreaker newBreaker = new CircuitBreaker(serverUrl);
+            breaker = BREAKERS.putIfAbsent(serverUrl, newBreaker);
+            if (breaker == null) {
+                breaker = newBreaker;
+                OrchestratorMetrics.breakerCreated(serverUrl);
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Drops the breaker of a server that is no longer used, unless it is open.
+     */
+    public static void remove(String serverUrl) {
+        CircuitBreaker breaker = BREAKERS.get(serverUrl);
+        if (breaker != null && breaker.getState() != State.OPEN && BREAKERS.remove(serverUrl, breaker)) {
+            OrchestratorMetrics.breakerRemoved(serverUrl);
+        }
+    }
+
+    /**
+     * Lets a request through, or throws if the breaker is open or its half-open probe is still running. The caller
+     * must report the outcome with {@link #recordSuccess(long)} or {@link #recordFailure(long)}, passing the returned
+     * call id.
+     */
+    public synchronized long acquire() throws ServerUnavailableException {
+        if (FAILURE_THRESHOLD <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (state == State.OPEN) {
+            long remaining = OPEN_MILLIS - TimeUnit.NANOSECONDS.toMillis(now - openedAt);
+            if (remaining > 0) {
+                throw reject(remaining);
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            //A probe that never reported back must not keep the breaker half-open forever
+            if (probeId != 0 && TimeUnit.NANOSECONDS.toMillis(now - probeStartedAt) < OPEN_MILLIS) {
+                throw reject(OPEN_MILLIS - TimeUnit.NANOSECONDS.toMillis(now - probeStartedAt));
+            }
+            probeId = ++lastProbeId;
+            probeStartedAt = now;
+            return probeId;
+        }
+        return 0;
+    }
+
+    /**
+     * Records a call that got an answer. Calls sent before the breaker opened do not close it, only the probe does.
+     */
+    public synchronized void recordSuccess(long callId) {
+        if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        } else if (state == State.HALF_OPEN && isProbe(callId)) {
+            consecutiveFailures = 0;
+            probeId = 0;
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * Records a failed call. While half-open only the failure of the probe opens the breaker again.
+     */
+    public synchronized void recordFailure(long callId) {
+        if (state == State.HALF_OPEN && !isProbe(callId)) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && FAILURE_THRESHOLD > 0
+                && consecutiveFailures >= FAILURE_THRESHOLD)) {
+            probeId = 0;
+            openedAt = System.nanoTime();
+            transition(State.OPEN);
+        }
+    }
+
+    private boolean isProbe(long callId) {
+        return callId != 0 && callId == probeId;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private ServerUnavailableException reject(long retryAfterMillis) {
+        OrchestratorMetrics.recordBreakerRejection(serverUrl);
+        return new ServerUnavailableException(String.format("Orchestrator server %s is unavailable after %d failed "
+                + "requests, retry in %d seconds.", serverUrl, consecutiveFailures,
+                TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis) + 1), retryAfterMillis);
+    }
+
+    private void transition(State newState) {
+        LOGGER.log(newState == State.OPEN ? Level.WARNING : Level.INFO, "Circuit breaker of {0} is now {1}",
+                new Object[]{serverUrl, newState});
+        state = newState;
+        OrchestratorMetrics.recordBreakerTransition(serverUrl, newState);
+    }
+}
@@ -0,0 +1,155 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContextBuilder;
+
+/**
+ * Holds one long-lived, pooled {@link CloseableHttpClient} per Orchestrator server and trust setting.
+ * <p/>
+ * The clients are static, so every {@link RestClient} in the same JVM (the controller or an agent) shares the
+ * keep-alive connections and the TLS session cache of its server instead of paying a new handshake per request.
+ * Limits and timeouts are read from system properties prefixed with {@code com.vmware.vro.jenkins.plugin.util
+ * .HttpClientPool.} so they can be tuned on agents as well as on the controller.
+ */
+public final class HttpClientPool {
+
+    private static final String PROPERTY_PREFIX = HttpClientPool.class.getName() + ".";
+
+    static final int MAX_PER_ROUTE = Integer.getInteger(PROPERTY_PREFIX + "maxPerRoute", 20);
+    static final int MAX_TOTAL = Integer.getInteger(PROPERTY_PREFIX + "maxTotal", 100);
+    static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger(PROPERTY_PREFIX + "connectTimeout", 30 * 1000);
+    static final int SOCKET_TIMEOUT_MILLIS = Integer.getInteger(PROPERTY_PREFIX + "socketTimeout", 120 * 1000);
+    static final int IDLE_TIMEOUT_MILLIS = Integer.getInteger(PROPERTY_PREFIX + "idleTimeout", 60 * 1000);
+    static final int VALIDATE_AFTER_INACTIVITY_MILLIS = Integer.getInteger(
+            PROPERTY_PREFIX + "validateAfterInactivity", 2 * 1000);
+    static final boolean COMPRESSION = !Boolean.getBoolean(PROPERTY_PREFIX + "disableCompression");
+
+    private static final ConcurrentMap<String, CloseableHttpClient> CLIENTS =
+            new ConcurrentHashMap<String, CloseableHttpClient>();
+
+    private HttpClientPool() {
+    }
+
+    /**
+     * Returns the shared client for the server of the given url, creating it on first use.
+     */
+    public static CloseableHttpClient getClient(String serverUrl, boolean trustSelfSigned)
+            throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, MalformedURLException {
+        String key = getPoolKey(serverUrl, trustSelfSigned);
+        CloseableHttpClient client = CLIENTS.get(key);
+        if (client == null) {
+            synchronized (CLIENTS) {
+                client = CLIENTS.get(key);
+                if (client == null) {
+                    client = createClient(trustSelfSigned);
+                    CLIENTS.put(key, client);
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Returns the request config of the pooled clients with the connect, pool lease and read timeouts replaced.
+     */
+    public static RequestConfig getRequestConfig(int timeoutMillis) {
+        return RequestConfig.copy(createRequestConfig())
+                .setConnectTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .build();
+    }
+
+    /*
+     * Clients are shared per scheme, host and port, so different paths and users on the same server reuse the
+     * same pool.
+     */
+    private static String getPoolKey(String serverUrl, boolean trustSelfSigned) throws MalformedURLException {
+        URL url = new URL(serverUrl);
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return String.format("%s://%s:%d|%s", url.getProtocol().toLowerCase(Locale.ENGLISH),
+                url.getHost().toLowerCase(Locale.ENGLISH), port, trustSelfSigned);
+    }
+
+    private static CloseableHttpClient createClient(boolean trustSelfSigned)
+            throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        SSLContextBuilder builder = new SSLContextBuilder();
+        if (trustSelfSigned) {
+            builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
+        }
+        //A single SSL context per pool lets JSSE resume TLS sessions for new connections
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(builder.build());
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        HttpClientBuilder clientBuilder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(createRequestConfig())
+                .setKeepAliveStrategy(new BoundedKeepAliveStrategy())
+                //RetryPolicy is the only place requests are sent again, so the breaker sees every failed attempt
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections((long) IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        //Unless disabled, requests send Accept-Encoding: gzip,deflate and bodies are decompressed as they are read
+        if (!COMPRESSION) {
+            clientBuilder.disableContentCompression();
+        }
+        return clientBuilder.build();
+    }
+
+    static RequestConfig createRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+                .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                .build();
+    }
+
+    /*
+     * Honors the server's Keep-Alive header but never keeps a connection longer than the idle timeout, as the
+     * Orchestrator appliance does not always advertise one.
+     */
+    private static class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+        private final ConnectionKeepAliveStrategy delegate = DefaultConnectionKeepAliveStrategy.INSTANCE;
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = delegate.getKeepAliveDuration(response, context);
+            if (duration <= 0 || duration > IDLE_TIMEOUT_MILLIS) {
+                return IDLE_TIMEOUT_MILLIS;
+            }
+            return duration;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and histograms of the plugin's REST calls, token cache, workflow listings and execution polling,
+ * labelled by Orchestrator server.
+ * <p/>
+ * Metrics are kept per JVM: calls made by builds running on an agent are recorded in that agent. The controller's
+ * metrics are served in the Prometheus text format by {@code OrchestratorMetricsAction} and registered in JMX as
+ * {@value #OBJECT_NAME}.
+ */
+public final class OrchestratorMetrics implements OrchestratorMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(OrchestratorMetrics.class.getName());
+
+    static final String OBJECT_NAME = "com.vmware.vro.jenkins.plugin:type=OrchestratorMetrics";
+
+    private static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+    private static final double[] DURATION_BUCKETS = {1, 5, 10, 30, 60, 120, 300, 600, 1800, 3600, 7200, 21600};
+    private static final double[] POLL_BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+    private static final String HTTP_REQUEST_DURATION = "orchestrator_http_request_duration_seconds";
+    private static final String HTTP_REQUEST_BYTES = "orchestrator_http_request_bytes_total";
+    private static final String HTTP_RESPONSE_BYTES = "orchestrator_http_response_bytes_total";
+    private static final String HTTP_REVALIDATIONS = "orchestrator_http_revalidations_total";
+    private static final String HTTP_RETRIES = "orchestrator_http_retries_total";
+    private static final String BREAKER_STATE = "orchestrator_circuit_breaker_state";
+    private static final String BREAKER_TRANSITIONS = "orchestrator_circuit_breaker_transitions_total";
+    private static final String BREAKER_REJECTIONS = "orchestrator_circuit_breaker_rejections_total";
+    private static final String NODE_HEALTHY = "orchestrator_node_healthy";
+    private static final String ADMISSION_QUEUED = "orchestrator_admission_queued_builds";
+    private static final String ADMISSION_RUNNING = "orchestrator_admission_running_submissions";
+    private static final String ADMISSION_WAIT = "orchestrator_admission_wait_duration_seconds";
+    private static final String TOKEN_LOOKUPS = "orchestrator_token_cache_lookups_total";
+    private static final String LOGIN_DURATION = "orchestrator_login_duration_seconds";
+    private static final String WORKFLOW_LISTING_DURATION = "orchestrator_workflow_listing_duration_seconds";
+    private static final String WORKFLOW_LISTING_SIZE = "orchestrator_workflow_listing_workflows";
+    private static final String EXECUTION_POLLS = "orchestrator_execution_polls_total";
+    private static final String EXECUTION_POLLS_PER_EXECUTION = "orchestrator_execution_polls";
+    private static final String EXECUTION_DURATION = "orchestrator_execution_wait_duration_seconds";
+    private static final String EXECUTIONS_IN_FLIGHT = "orchestrator_executions_in_flight";
+
+    private static final Map<String, String> HELP = new HashMap<String, String>();
+
+    static {
+        HELP.put(HTTP_REQUEST_DURATION, "Time until the response headers of a REST call are received.");
+        HELP.put(HTTP_REQUEST_BYTES, "Bytes of request bodies sent.");
+        HELP.put(HTTP_RESPONSE_BYTES, "Bytes of response bodies read, after decompression.");
+        HELP.put(HTTP_REVALIDATIONS, "Conditional requests for cached responses by result.");
+        HELP.put(HTTP_RETRIES, "REST calls sent again after a transient failure, by the status or error retried.");
+        HELP.put(BREAKER_STATE, "State of the server's circuit breaker: 0 closed, 1 half-open, 2 open.");
+        HELP.put(BREAKER_TRANSITIONS, "Circuit breaker state changes by the state entered.");
+        HELP.put(BREAKER_REJECTIONS, "Requests failed without being sent because the circuit breaker was open.");
+        HELP.put(NODE_HEALTHY, "Result of the last health probe of a cluster node: 1 healthy, 0 unhealthy.");
+        HELP.put(ADMISSION_QUEUED, "Builds waiting for admission to the server.");
+        HELP.put(ADMISSION_RUNNING, "Admitted builds that have not released their admission yet.");
+        HELP.put(ADMISSION_WAIT, "Time builds waited in the admission queue.");
+        HELP.put(TOKEN_LOOKUPS, "Identity token cache lookups by result.");
+        HELP.put(LOGIN_DURATION, "Time taken to obtain an identity token.");
+        HELP.put(WORKFLOW_LISTING_DURATION, "Time taken to list every workflow of a server.");
+        HELP.put(WORKFLOW_LISTING_SIZE, "Number of workflows returned by the last listing.");
+        HELP.put(EXECUTION_POLLS, "Execution state requests sent while waiting for workflows.");
+        HELP.put(EXECUTION_POLLS_PER_EXECUTION, "Execution state requests sent per waited execution.");
+        HELP.put(EXECUTION_DURATION, "Time from the start of the wait to the completion of an execution.");
+        HELP.put(EXECUTIONS_IN_FLIGHT, "Executions currently waited on.");
+    }
+
+    private static final OrchestratorMetrics INSTANCE = new OrchestratorMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            //Already registered by another copy of the plugin, or JMX is not available
+            LOGGER.log(Level.FINE, "Failed to register the metrics MBean", e);
+        }
+    }
+
+    private final ConcurrentMap<Series, AtomicLong> counters = new ConcurrentHashMap<Series, AtomicLong>();
+    private final ConcurrentMap<Series, AtomicLong> gauges = new ConcurrentHashMap<Series, AtomicLong>();
+    private final ConcurrentMap<Series, Histogram> histograms = new ConcurrentHashMap<Series, Histogram>();
+
+    private OrchestratorMetrics() {
+    }
+
+    public static OrchestratorMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a REST call. The status is the HTTP status code, or "error" when no response was received.
+     */
+    public static void recordRequest(String serverUrl, String method, String requestUrl, String status,
+                                     long durationNanos) {
+        INSTANCE.histogram(new Series(HTTP_REQUEST_DURATION, labels("server", serverUrl, "method", method,
+                "endpoint", endpointOf(requestUrl), "status", status)), LATENCY_BUCKETS)
+                .observe(toSeconds(durationNanos));
+    }
+
+    public static void recordRequestBytes(String serverUrl, long bytes) {
+        if (bytes > 0) {
+            INSTANCE.counter(new Series(HTTP_REQUEST_BYTES, labels("server", serverUrl))).addAndGet(bytes);
+        }
+    }
+
+    public static void recordResponseBytes(String serverUrl, long bytes) {
+        if (bytes > 0) {
+            INSTANCE.counter(new Series(HTTP_RESPONSE_BYTES, labels("server", serverUrl))).addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Records a conditional request for a cached response, which either was not modified or was downloaded again.
+     */
+    public static void recordRevalidation(String serverUrl, boolean notModified) {
+        INSTANCE.counter(new Series(HTTP_REVALIDATIONS, labels("server", serverUrl, "result",
+                notModified ? "not_modified" : "modified"))).incrementAndGet();
+    }
+
+    /**
+     * Records a REST call about to be sent again. The reason is the HTTP status code retried, or "error" when no
+     * response was received.
+     */
+    public static void recordRetry(String serverUrl, String method, String reason) {
+        INSTANCE.counter(new Series(HTTP_RETRIES, labels("server", serverUrl, "method", method, "reason", reason)))
+                .incrementAndGet();
+    }
+
+    public static void breakerCreated(String serverUrl) {
+        INSTANCE.gauge(new Series(BREAKER_STATE, labels("server", serverUrl)))
+                .set(CircuitBreaker.State.CLOSED.ordinal());
+    }
+
+    public static void breakerRemoved(String serverUrl) {
+        INSTANCE.gauges.remove(new Series(BREAKER_STATE, labels("server", serverUrl)));
+    }
+
+    public static void recordBreakerTransition(String serverUrl, CircuitBreaker.State state) {
+        INSTANCE.gauge(new Series(BREAKER_STATE, labels("server", serverUrl))).set(state.ordinal());
+        INSTANCE.counter(new Series(BREAKER_TRANSITIONS, labels("server", serverUrl, "state",
+                state.name().toLowerCase(Locale.ENGLISH)))).incrementAndGet();
+    }
+
+    public static void recordBreakerRejection(String serverUrl) {
+        INSTANCE.counter(new Series(BREAKER_REJECTIONS, labels("server", serverUrl))).incrementAndGet();
+    }
+
+    public static void recordNodeHealth(String serverUrl, boolean healthy) {
+        INSTANCE.gauge(new Series(NODE_HEALTHY, labels("server", serverUrl))).set(healthy ? 1 : 0);
+    }
+
+    public static void nodeRemoved(String serverUrl) {
+        INSTANCE.gauges.remove(new Series(NODE_HEALTHY, labels("server", serverUrl)));
+    }
+
+    public static void recordAdmissionQueue(String serverUrl, int queued, int running) {
+        INSTANCE.gauge(new Series(ADMISSION_QUEUED, labels("server", serverUrl))).set(queued);
+        INSTANCE.gauge(new Series(ADMISSION_RUNNING, labels("server", serverUrl))).set(running);
+    }
+
+    public static void recordAdmissionWait(String serverUrl, long durationNanos) {
+        INSTANCE.histogram(new Series(ADMISSION_WAIT, labels("server", serverUrl)), DURATION_BUCKETS)
+                .observe(toSeconds(durationNanos));
+    }
+
+    public static void recordTokenLookup(String serverUrl, boolean hit) {
+        INSTANCE.counter(new Series(TOKEN_LOOKUPS, labels("server", serverUrl, "result", hit ? "hit" : "miss")))
+                .incrementAndGet();
+    }
+
+    public static void recordLogin(String serverUrl, long durationNanos) {
+        INSTANCE.histogram(new Series(LOGIN_DURATION, labels("server", serverUrl)), LATENCY_BUCKETS)
+                .observe(toSeconds(durationNanos));
+    }
+
+    public static void recordWorkflowListing(String serverUrl, int workflows, long durationNanos) {
+        INSTANCE.histogram(new Series(WORKFLOW_LISTING_DURATION, labels("server", serverUrl)), LATENCY_BUCKETS)
+                .observe(toSeconds(durationNanos));
+        INSTANCE.gauge(new Series(WORKFLOW_LISTING_SIZE, labels("server", serverUrl))).set(workflows);
+    }
+
+    public static void recordPoll(String serverUrl) {
+        INSTANCE.counter(new Series(EXECUTION_POLLS, labels("server", serverUrl))).incrementAndGet();
+    }
+
+    public static void executionStarted(String serverUrl) {
+        INSTANCE.gauge(new Series(EXECUTIONS_IN_FLIGHT, labels("server", serverUrl))).incrementAndGet();
+    }
+
+    /**
+     * Records the end of the wait for an execution, the state is the final state of the execution or the reason
+     * the wait ended without one.
+     */
+    public static void executionFinished(String serverUrl, String state, int polls, long durationNanos) {
+        INSTANCE.gauge(new Series(EXECUTIONS_IN_FLIGHT, labels("server", serverUrl))).decrementAndGet();
+        INSTANCE.histogram(new Series(EXECUTION_POLLS_PER_EXECUTION, labels("server", serverUrl)), POLL_BUCKETS)
+                .observe(polls);
+        INSTANCE.histogram(new Series(EXECUTION_DURATION, labels("server", serverUrl, "state", state)),
+                DURATION_BUCKETS).observe(toSeconds(durationNanos));
+    }
+
+    /**
+     * Writes every series in the Prometheus text exposition format.
+     */
+    public static void writePrometheus(Writer writer) throws IOException {
+        String currentName = null;
+        for (Map.Entry<Series, Object> entry : INSTANCE.sortedSeries().entrySet()) {
+            Series series = entry.getKey();
+            Object value = entry.getValue();
+            if (!series.name.equals(currentName)) {
+                currentName = series.name;
+                writer.write("# HELP " + currentName + ' ' + HELP.get(currentName) + '\n');
+                writer.write("# TYPE " + currentName + ' ' + typeOf(series, value) + '\n');
+            }
+            if (value instanceof Histogram) {
+                ((Histogram) value).write(writer, series);
+            } else {
+                writer.write(series.toString() + ' ' + ((AtomicLong) value).get() + '\n');
+            }
+        }
+    }
+
+    /**
+     * Reduces a request url to its path with the workflow and execution ids replaced, so that calls to the same
+     * endpoint share a series.
+     */
+    static String endpointOf(String requestUrl) {
+        String path;
+        try {
+            path = new URL(requestUrl).getPath();
+        } catch (MalformedURLException e) {
+            return "unknown";
+        }
+        StringBuilder endpoint = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (segment.length() > 0) {
+                endpoint.append('/').append(isIdentifier(segment) ? "{id}" : segment);
+            }
+        }
+        if (path.endsWith("/")) {
+            endpoint.append('/');
+        }
+        return endpoint.toString();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return values(counters);
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        return values(gauges);
+    }
+
+    @Override
+    public Map<String, Long> getHistogramCounts() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<Series, Histogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().count.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getHistogramSums() {
+        Map<String, Double> result = new TreeMap<String, Double>();
+        for (Map.Entry<Series, Histogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().getSum());
+        }
+        return result;
+    }
+
+    private AtomicLong counter(Series series) {
+        return getOrCreate(counters, series);
+    }
+
+    private AtomicLong gauge(Series series) {
+        return getOrCreate(gauges, series);
+    }
+
+    private Histogram histogram(Series series, double[] buckets) {
+        Histogram histogram = histograms.get(series);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram(buckets);
+            histogram = histograms.putIfAbsent(series, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    private Map<Series, Object> sortedSeries() {
+        Map<Series, Object> sorted = new TreeMap<Series, Object>();
+        sorted.putAll(counters);
+        sorted.putAll(gauges);
+        sorted.putAll(histograms);
+        return sorted;
+    }
+
+    private static AtomicLong getOrCreate(ConcurrentMap<Series, AtomicLong> map, Series series) {
+        AtomicLong value = map.get(series);
+        if (value == null) {
+            AtomicLong newValue = new AtomicLong();
+            value = map.putIfAbsent(series, newValue);
+            if (value == null) {
+                value = newValue;
+            }
+        }
+        return value;
+    }
+
+    private static Map<String, Long> values(Map<Series, AtomicLong> map) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<Series, AtomicLong> entry : map.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    private static String typeOf(Series series, Object value) {
+        if (value instanceof Histogram) {
+            return "histogram";
+        }
+        return INSTANCE.gauges.containsKey(series) ? "gauge" : "counter";
+    }
+
+    private static boolean isIdentifier(String segment) {
+        if (segment.length() < 8) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (Character.isDigit(segment.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(namesAndValues[i]).append("=\"").append(escape(namesAndValues[i + 1])).append('"');
+        }
+        return labels.toString();
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ENGLISH, "%s", value);
+    }
+
+    /*
+     * A metric name and its formatted label set.
+     */
+    private static class Series implements Comparable<Series> {
+        private final String name;
+        private final String labels;
+
+        Series(String name, String labels) {
+            this.name = name;
+            this.labels = labels;
+        }
+
+        String withLabel(String suffix, String extraLabel) {
+            String allLabels = extraLabel == null ? labels : (labels.length() > 0 ? labels + ',' : "") + extraLabel;
+            return name + suffix + '{' + allLabels + '}';
+        }
+
+        @Override
+        public int compareTo(Series other) {
+            int result = name.compareTo(other.name);
+            return result != 0 ? result : labels.compareTo(other.labels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Series)) {
+                return false;
+            }
+            Series other = (Series) o;
+            return name.equals(other.name) && labels.equals(other.labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + labels.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return withLabel("", null);
+        }
+    }
+
+    /*
+     * Fixed bucket histogram. Bucket counts are kept per bucket and made cumulative when written.
+     */
+    private static class Histogram {
+        private final double[] bounds;
+        private final AtomicLongArray buckets;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumBits = new AtomicLong(Double.doubleToLongBits(0));
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new AtomicLongArray(bounds.length + 1);
+        }
+
+        void observe(double value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            while (true) {
+                long current = sumBits.get();
+                long updated = Double.doubleToLongBits(Double.longBitsToDouble(current) + value);
+                if (sumBits.compareAndSet(current, updated)) {
+                    return;
+                }
+            }
+        }
+
+        double getSum() {
+            return Double.longBitsToDouble(sumBits.get());
+        }
+
+        void write(Writer writer, Series series) throws IOException {
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets.get(i);
+                writer.write(series.withLabel("_bucket", "le=\"" + format(bounds[i]) + '"') + ' ' + cumulative + '\n');
+            }
+            cumulative += buckets.get(bounds.length);
+            writer.write(series.withLabel("_bucket", "le=\"+Inf\"") + ' ' + cumulative + '\n');
+            writer.write(series.withLabel("_sum", null) + ' ' + format(getSum()) + '\n');
+            writer.write(series.withLabel("_count", null) + ' ' + count.get() + '\n');
+        }
+    }
+}
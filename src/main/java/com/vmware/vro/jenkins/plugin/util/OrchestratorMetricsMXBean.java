@@ -0,0 +1,18 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link OrchestratorMetrics}. Series are keyed by their Prometheus name and labels, histograms are
+ * exposed as their count and sum.
+ */
+public interface OrchestratorMetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    Map<String, Long> getHistogramCounts();
+
+    Map<String, Double> getHistogramSums();
+}
@@ -0,0 +1,15 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.Serializable;
+
+/**
+ * Decides how long to wait between two polls of a workflow execution.
+ */
+public interface PollingStrategy extends Serializable {
+
+    /**
+     * Returns the delay in milliseconds before the given poll, the first poll after the initial state check being
+     * poll 0.
+     */
+    long getDelayMillis(int poll);
+}
@@ -0,0 +1,12 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Decodes a response body straight from the connection, so that large responses are never buffered as a whole.
+ * The reader is closed and the connection released by {@link RestClient} once this returns.
+ */
+public interface ResponseReader<T> {
+    T read(Reader reader) throws IOException;
+}
@@ -1,36 +1,44 @@
 package com.vmware.vro.jenkins.plugin.util;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -45,23 +53,71 @@ public class RestClient {
     private static final String ACCEPT_CONTENT_TYPE = "application/json";
     private static final String AUTHORIZATION = "Authorization";
     private static final String LOCATION_HEADER = "Location";
+    private static final String BEARER = "Bearer ";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
 
     //Auth related field
     private static final String USER_NAME = "username";
     private static final String PASSWORD = "password";
     private static final String TENANT = "tenant";
     private static final String ID = "id";
+    private static final String EXPIRES = "expires";
+
+    private static final ResponseReader<String> STRING_READER = new ResponseReader<String>() {
+        @Override
+        public String read(Reader reader) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, count);
+            }
+            return sb.toString();
+        }
+    };
 
     private final String serverUrl;
     private final String userName;
     private final String password;
     private final String tenant;
+    private final int requestTimeoutMillis;
+    private final boolean deferRetries;
 
     public RestClient(String serverUrl, String userName, String password, String tenant) {
+        this(serverUrl, userName, password, tenant, 0);
+    }
+
+    /**
+     * Creates a client whose requests use the given connect and read timeout instead of the pool's defaults, unless
+     * it is 0.
+     */
+    public RestClient(String serverUrl, String userName, String password, String tenant, int requestTimeoutMillis) {
+        this(serverUrl, userName, password, tenant, requestTimeoutMillis, false);
+    }
+
+    /**
+     * Creates a client that, when deferRetries is set, throws a {@link RetryLaterException} instead of waiting for
+     * the backoff of a retry, for callers running on shared threads that reschedule the call themselves.
+     */
+    public RestClient(String serverUrl, String userName, String password, String tenant, int requestTimeoutMillis,
+                      boolean deferRetries) {
         this.serverUrl = serverUrl;
         this.userName = userName;
         this.password = password;
         this.tenant = tenant;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.deferRetries = deferRetries;
+    }
+
+    String getServerUrl() {
+        return serverUrl;
+    }
+
+    int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
     }
 
     /**
@@ -73,28 +129,122 @@ public class RestClient {
 
         URL url = new URL(requestUrl);
         HttpGet httpGet = new HttpGet(url.toURI());
-        Map<String, String> headers = getRequestHeaders();
-        HttpResponse response = executeRequest(httpGet, headers);
+        HttpResponse response = executeAuthenticatedRequest(httpGet);
 
         return parseResponse(response);
     }
 
+    /**
+     * Performs an HttpGet connection to the server and decodes the response body with the given reader while it is
+     * received.
+     */
+    public <T> T httpGet(String requestUrl, ResponseReader<T> responseReader)
+            throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
+            KeyManagementException {
+
+        URL url = new URL(requestUrl);
+        HttpGet httpGet = new HttpGet(url.toURI());
+        HttpResponse response = executeAuthenticatedRequest(httpGet);
+
+        return parseResponse(response, responseReader);
+    }
+
+    /**
+     * Performs a conditional HttpGet for a resource that rarely changes, such as the workflow list or a workflow
+     * definition, and returns the result a JSON formatted string.
+     */
+    public String httpGetCached(String requestUrl)
+            throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
+            KeyManagementException {
+        return httpGetCached(requestUrl, STRING_READER);
+    }
+
+    /**
+     * Performs a conditional HttpGet for a resource that rarely changes. A body served with an ETag or Last-Modified
+     * header is kept in the {@link ValidatorCache}, and the next request for the same url sends them back with
+     * If-None-Match and If-Modified-Since. On a 304 the kept body is decoded instead of downloading it again.
+     */
+    public <T> T httpGetCached(String requestUrl, ResponseReader<T> responseReader)
+            throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
+            KeyManagementException {
+        String key = CacheKeys.forUser(serverUrl, tenant, userName) + '|' + requestUrl;
+        ValidatorCache.Entry cached = ValidatorCache.get(key);
+
+        URL url = new URL(requestUrl);
+        HttpGet httpGet = new HttpGet(url.toURI());
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                httpGet.setHeader(IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                httpGet.setHeader(IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+        HttpResponse response = executeAuthenticatedRequest(httpGet);
+        if (response == null) {
+            return null;
+        }
+
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+            consumeEntity(response.getEntity());
+            OrchestratorMetrics.recordRevalidation(serverUrl, true);
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(cached.getBody()), StandardCharsets.UTF_8);
+            try {
+                return responseReader.read(reader);
+            } finally {
+                reader.close();
+            }
+        }
+        if (cached != null) {
+            OrchestratorMetrics.recordRevalidation(serverUrl, false);
+        }
+
+        String etag = getHeaderValue(response, ETAG);
+        String lastModified = getHeaderValue(response, LAST_MODIFIED);
+        if (statusCode != HttpStatus.SC_OK || (etag == null && lastModified == null)) {
+            ValidatorCache.remove(key);
+            return parseResponse(response, responseReader);
+        }
+        //Keep a copy of the body while it is decoded, unless it turns out too large to cache
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        T result = parseResponse(response, responseReader, body, ValidatorCache.MAX_ENTRY_BYTES);
+        if (body.size() > 0) {
+            ValidatorCache.put(key, new ValidatorCache.Entry(etag, lastModified, body.toByteArray()));
+        } else {
+            ValidatorCache.remove(key);
+        }
+        return result;
+    }
+
     /**
      * Performs an HttpPost connection to the server and returns the result a JSON formatted string.
      */
     public String httpPostForLocationHeader(String requestUrl, String payload)
             throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
             KeyManagementException {
+        StringEntity postEntity = null;
+        if (payload != null) {
+            postEntity = new StringEntity(payload, StandardCharsets.UTF_8);
+            postEntity.setContentType(ACCEPT_CONTENT_TYPE);
+        }
+        return httpPostForLocationHeader(requestUrl, postEntity);
+    }
+
+    /**
+     * Performs an HttpPost connection to the server with the given body, which must be repeatable, and returns the
+     * location header of the accepted request.
+     */
+    public String httpPostForLocationHeader(String requestUrl, HttpEntity postEntity)
+            throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
+            KeyManagementException {
         URL url = new URL(requestUrl);
         HttpPost httpPost = new HttpPost(url.toURI());
 
-        if (payload != null) {
-            StringEntity postEntity = new StringEntity(payload, StandardCharsets.UTF_8);
-            postEntity.setContentType(ACCEPT_CONTENT_TYPE);
+        if (postEntity != null) {
             httpPost.setEntity(postEntity);
         }
-        Map<String, String> headers = getRequestHeaders();
-        HttpResponse response = executeRequest(httpPost, headers);
+        HttpResponse response = executeAuthenticatedRequest(httpPost);
 
         if (response != null) {
             int statusCode = response.getStatusLine().getStatusCode();
@@ -102,12 +252,30 @@ public class RestClient {
                 //Get location header
                 return parseResponseLocationHeader(response).get(0);
             } else {
+                //Release the pooled connection before failing
+                consumeEntity(response.getEntity());
                 throw new IOException("Server responded with status code " + response.getStatusLine());
             }
         }
         return null;
     }
 
+    /**
+     * Performs an HttpDelete connection to the server and returns the status code of the response, -1 if there was
+     * none.
+     */
+    public int httpDelete(String requestUrl)
+            throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
+            KeyManagementException {
+        URL url = new URL(requestUrl);
+        HttpResponse response = executeAuthenticatedRequest(new HttpDelete(url.toURI()));
+        if (response == null) {
+            return -1;
+        }
+        consumeEntity(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
+
     public String httpPost(String requestUrl, String payload)
             throws IOException, URISyntaxException, NoSuchAlgorithmException, KeyStoreException,
             KeyManagementException {
@@ -127,7 +295,26 @@ public class RestClient {
     }
 
     /*
-     * Executes the http request to the server
+     * Executes the request with the auth headers. A token rejected with 401 before its expiry is dropped from the
+     * cache and the request is retried once with a fresh login.
+     */
+    private HttpResponse executeAuthenticatedRequest(HttpUriRequest uriRequest)
+            throws IOException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
+            URISyntaxException {
+        Map<String, String> headers = getRequestHeaders();
+        HttpResponse response = executeRequest(uriRequest, headers);
+        if (isTokenAuth() && response != null
+                && response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            consumeEntity(response.getEntity());
+            invalidateToken(headers);
+            response = executeRequest(uriRequest, getRequestHeaders());
+        }
+        return response;
+    }
+
+    /*
+     * Executes the http request to the server through its circuit breaker, retrying transient failures as allowed
+     * by the RetryPolicy. The last response is returned as is once the retries are exhausted.
      */
     private HttpResponse executeRequest(HttpUriRequest uriRequest, Map<String, String> headers)
             throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException {
@@ -136,32 +323,120 @@ public class RestClient {
                 uriRequest.setHeader(entry.getKey(), entry.getValue());
             }
         }
-        return getHttpClient().execute(uriRequest);
+        if (requestTimeoutMillis > 0 && uriRequest instanceof HttpRequestBase) {
+            ((HttpRequestBase) uriRequest).setConfig(HttpClientPool.getRequestConfig(requestTimeoutMillis));
+        }
+        boolean repeatable = true;
+        if (uriRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity requestEntity = ((HttpEntityEnclosingRequest) uriRequest).getEntity();
+            if (requestEntity != null) {
+                OrchestratorMetrics.recordRequestBytes(serverUrl, requestEntity.getContentLength());
+                repeatable = requestEntity.isRepeatable();
+            }
+        }
+        String method = uriRequest.getMethod();
+        boolean idempotent = RetryPolicy.isIdempotent(method);
+        String requestUrl = uriRequest.getURI().toString();
+        CircuitBreaker breaker = CircuitBreaker.forServer(serverUrl);
+        for (int retry = 0; ; retry++) {
+            long callId = breaker.acquire();
+            boolean lastAttempt = !repeatable || retry >= RetryPolicy.MAX_RETRIES;
+            HttpResponse response;
+            long start = System.nanoTime();
+            try {
+                response = getHttpClient().execute(uriRequest);
+            } catch (IOException e) {
+                OrchestratorMetrics.recordRequest(serverUrl, method, requestUrl, "error", System.nanoTime() - start);
+                breaker.recordFailure(callId);
+                if (lastAttempt || !RetryPolicy.isRetryable(e, idempotent)) {
+                    throw e;
+                }
+                waitBeforeRetry(method, "error", RetryPolicy.getDelayMillis(retry, -1), e);
+                continue;
+            } catch (RuntimeException e) {
+                breaker.recordFailure(callId);
+                throw e;
+            }
+            int statusCode = response.getStatusLine().getStatusCode();
+            OrchestratorMetrics.recordRequest(serverUrl, method, requestUrl, String.valueOf(statusCode),
+                    System.nanoTime() - start);
+            if (!RetryPolicy.isTransientStatus(statusCode)) {
+                breaker.recordSuccess(callId);
+                return response;
+            }
+            breaker.recordFailure(callId);
+            long delay = lastAttempt || !RetryPolicy.isRetryable(statusCode, idempotent) ? -1
+                    : RetryPolicy.getDelayMillis(retry, RetryPolicy.getRetryAfterMillis(response));
+            if (delay < 0) {
+                return response;
+            }
+            consumeEntity(response.getEntity());
+            waitBeforeRetry(method, String.valueOf(statusCode), delay, null);
+        }
+    }
+
+    private void waitBeforeRetry(String method, String reason, long delayMillis, IOException cause)
+            throws InterruptedIOException, RetryLaterException {
+        OrchestratorMetrics.recordRetry(serverUrl, method, reason);
+        if (deferRetries) {
+            throw new RetryLaterException(String.format("%s request to %s failed with %s, retry in %d ms", method,
+                    serverUrl, reason, delayMillis), delayMillis, cause);
+        }
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry a request to " + serverUrl);
+        }
     }
 
+    /*
+     * The client is shared with every other RestClient of the same server, so it must never be closed here.
+     */
     private CloseableHttpClient getHttpClient() throws NoSuchAlgorithmException, KeyStoreException,
-            KeyManagementException {
-        SSLContextBuilder builder = new SSLContextBuilder();
-        builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
-        SSLConnectionSocketFactory connectionSocketFactory = new SSLConnectionSocketFactory(builder.build());
-        return HttpClients.custom().setSSLSocketFactory(connectionSocketFactory).build();
+            KeyManagementException, MalformedURLException {
+        return HttpClientPool.getClient(serverUrl, true);
     }
 
-    private Map<String, String> getRequestHeaders()
+    /*
+     * Drops the token sent with the given headers from the cache, so that the next request logs in again.
+     */
+    void invalidateToken(Map<String, String> headers) {
+        String rejectedToken = StringUtils.removeStart(headers.get(AUTHORIZATION), BEARER);
+        TokenCache.invalidate(serverUrl, tenant, userName, rejectedToken);
+    }
+
+    Map<String, String> getRequestHeaders()
             throws IOException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
             URISyntaxException {
         Map<String, String> headers = new HashMap<String, String>();
         headers.put(ACCEPT, ACCEPT_CONTENT_TYPE);
-        if (StringUtils.isBlank(tenant)) {
-            headers.put(AUTHORIZATION, "Basic " + constructAuthorizationHeader());
-        } else {
+        if (isTokenAuth()) {
             //Token based auth
-            headers.put(AUTHORIZATION, "Bearer " + getAuthToken());
+            headers.put(AUTHORIZATION, BEARER + getCachedAuthToken());
+        } else {
+            headers.put(AUTHORIZATION, "Basic " + constructAuthorizationHeader());
         }
         return headers;
     }
 
-    private String getAuthToken()
+    boolean isTokenAuth() {
+        return StringUtils.isNotBlank(tenant);
+    }
+
+    private String getCachedAuthToken() throws IOException {
+        return TokenCache.getToken(serverUrl, tenant, userName, password, new TokenCache.TokenLoader() {
+            @Override
+            public TokenCache.Token load() throws Exception {
+                long start = System.nanoTime();
+                TokenCache.Token token = getAuthToken();
+                OrchestratorMetrics.recordLogin(serverUrl, System.nanoTime() - start);
+                return token;
+            }
+        });
+    }
+
+    private TokenCache.Token getAuthToken()
             throws URISyntaxException, KeyManagementException, NoSuchAlgorithmException, KeyStoreException,
             IOException {
         String requestUrl = String.format("%s/identity/api/tokens", serverUrl);
@@ -174,7 +449,31 @@ public class RestClient {
 
         String authResponse = httpPost(requestUrl, requestPayload);
         JsonObject authResponseJson = getJsonObject(authResponse);
-        return authResponseJson.get(ID).getAsString();
+        if (!authResponseJson.has(ID)) {
+            throw new IOException("Failed to obtain auth token from " + requestUrl);
+        }
+        long expiresAt = 0;
+        if (authResponseJson.has(EXPIRES)) {
+            expiresAt = parseTimestamp(authResponseJson.get(EXPIRES).getAsString());
+        }
+        return new TokenCache.Token(authResponseJson.get(ID).getAsString(), expiresAt);
+    }
+
+    /*
+     * Parses the ISO-8601 UTC timestamps returned by the identity service, returns 0 if the format is unknown.
+     */
+    private long parseTimestamp(String timestamp) {
+        String[] patterns = {"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", "yyyy-MM-dd'T'HH:mm:ss'Z'"};
+        for (String pattern : patterns) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.ENGLISH);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                return format.parse(timestamp).getTime();
+            } catch (ParseException e) {
+                //Try the next pattern
+            }
+        }
+        return 0;
     }
 
     private JsonObject getJsonObject(String response) {
@@ -190,33 +489,42 @@ public class RestClient {
     /*
      * Parses the response from the server.
      */
-    private String parseResponse(HttpResponse response) throws IOException {
+    String parseResponse(HttpResponse response) throws IOException {
+        return parseResponse(response, STRING_READER);
+    }
+
+    /*
+     * Decodes the response body with the given reader and releases the connection.
+     */
+    <T> T parseResponse(HttpResponse response, ResponseReader<T> responseReader) throws IOException {
+        return parseResponse(response, responseReader, null, 0);
+    }
+
+    /*
+     * Decodes the response body and copies it to the given stream as it is read. The copy is discarded once it
+     * grows past the limit.
+     */
+    private <T> T parseResponse(HttpResponse response, ResponseReader<T> responseReader, ByteArrayOutputStream copy,
+                                int copyLimit) throws IOException {
         HttpEntity entity = null;
-        String result = null;
+        T result = null;
         try {
             if (response != null) {
                 entity = response.getEntity();
-                if (entity.getContent() != null) {
-                    StringBuilder sb = new StringBuilder();
-                    InputStream stream = entity.getContent();
-                    BufferedReader br = null;
+                if (entity != null && entity.getContent() != null) {
+                    CountingInputStream content = new CountingInputStream(entity.getContent(), copy, copyLimit);
+                    Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8);
                     try {
-                        br = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
-                        String line;
-                        while ((line = br.readLine()) != null) {
-                            sb.append(line);
+                        result = responseReader.read(reader);
+                        if (copy != null) {
+                            //Readers may stop after the last JSON token, the copy needs the whole body
+                            content.drain();
                         }
                     } finally {
-                        if (br != null) {
-                            br.close();
-                        }
-                        if (stream != null) {
-                            stream.close();
-                        }
+                        reader.close();
+                        OrchestratorMetrics.recordResponseBytes(serverUrl, content.getCount());
                     }
-                    result = sb.toString();
                 }
-                return result;
             }
         } finally {
             consumeEntity(entity);
@@ -230,6 +538,11 @@ public class RestClient {
         }
     }
 
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
     /**
      * Parses the response headers and constructs a list of resource URI form the location header.
      */
@@ -247,4 +560,79 @@ public class RestClient {
         }
         return locationHeaders;
     }
+
+    /*
+     * Counts the bytes of a response body as it is read, and optionally copies them up to a limit.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream copy;
+        private final int copyLimit;
+        private long count;
+        private boolean copyDiscarded;
+
+        CountingInputStream(InputStream in, ByteArrayOutputStream copy, int copyLimit) {
+            super(in);
+            this.copy = copy;
+            this.copyLimit = copyLimit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+                if (copy != null && !copyDiscarded) {
+                    copy.write(b);
+                    checkCopyLimit();
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+                if (copy != null && !copyDiscarded) {
+                    copy.write(b, off, read);
+                    checkCopyLimit();
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            if (copy != null && skipped > 0) {
+                //The skipped bytes are missing from the copy
+                discardCopy();
+            }
+            return skipped;
+        }
+
+        void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) != -1) {
+                //Copied by read
+            }
+        }
+
+        private void checkCopyLimit() {
+            if (copy.size() > copyLimit) {
+                discardCopy();
+            }
+        }
+
+        private void discardCopy() {
+            copyDiscarded = true;
+            copy.reset();
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
 }
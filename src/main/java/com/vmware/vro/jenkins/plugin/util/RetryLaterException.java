@@ -0,0 +1,26 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link RestClient} that defers its retries when a request failed and may be sent again after
+ * {@link #getRetryAfterMillis()}, so that the caller schedules the retry instead of a thread sleeping through the
+ * backoff.
+ */
+public class RetryLaterException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public RetryLaterException(String message, long retryAfterMillis, Throwable cause) {
+        super(message, cause);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the backoff the retry policy asks for before the request is sent again.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,124 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.net.ssl.SSLException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * Decides which failed REST calls are sent again and how long to wait before each attempt.
+ * <p/>
+ * Idempotent requests (GET, HEAD, PUT, DELETE) are retried after connection errors and 429, 502, 503 and 504
+ * responses. Other requests, such as the POST starting a workflow, are only retried when the server cannot have
+ * received them: the connection could not be opened, or the server answered 429. Attempts are spaced by an
+ * exponential backoff with full jitter, and never sooner than a {@code Retry-After} header asks. Use the prefix
+ * {@code com.vmware.vro.jenkins.plugin.util.RetryPolicy.} for the system properties.
+ */
+public final class RetryPolicy {
+
+    private static final String PROPERTY_PREFIX = RetryPolicy.class.getName() + ".";
+
+    static final int MAX_RETRIES = Integer.getInteger(PROPERTY_PREFIX + "maxRetries", 3);
+    static final long BASE_DELAY_MILLIS = Long.getLong(PROPERTY_PREFIX + "baseDelay", 500L);
+    static final long MAX_DELAY_MILLIS = Long.getLong(PROPERTY_PREFIX + "maxDelay", 10000L);
+    static final long MAX_RETRY_AFTER_MILLIS = Long.getLong(PROPERTY_PREFIX + "maxRetryAfter", 60000L);
+
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * Returns the number of retries allowed after the first attempt.
+     */
+    public static int getMaxRetries() {
+        return MAX_RETRIES;
+    }
+
+    public static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method) || "DELETE".equals(method);
+    }
+
+    /**
+     * Returns true for the statuses of an overloaded or unreachable server, which count as breaker failures.
+     */
+    public static boolean isTransientStatus(int statusCode) {
+        return statusCode == TOO_MANY_REQUESTS || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * Returns true if a request that got the given status should be sent again.
+     */
+    public static boolean isRetryable(int statusCode, boolean idempotent) {
+        return idempotent ? isTransientStatus(statusCode) : statusCode == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Returns true if a request that failed with the given exception should be sent again. Read timeouts are not
+     * retried, the request timeout of the job already bounds how long a call may take.
+     */
+    public static boolean isRetryable(IOException e, boolean idempotent) {
+        if (isConnectFailure(e)) {
+            return true;
+        }
+        if (!idempotent || e instanceof InterruptedIOException || e instanceof UnknownHostException
+                || e instanceof SSLException || e instanceof ServerUnavailableException) {
+            return false;
+        }
+        //Connection resets and servers closing the connection without a response
+        return true;
+    }
+
+    /**
+     * Returns true if the request failed before it reached the server, so that any request can be sent again, to the
+     * same server or another one.
+     */
+    public static boolean isUnsent(IOException e) {
+        return isConnectFailure(e) || e instanceof ServerUnavailableException;
+    }
+
+    private static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException
+                || e instanceof ConnectTimeoutException;
+    }
+
+    /**
+     * Returns the delay before the given retry, counted from 0: a random delay up to the exponential backoff cap,
+     * but not less than the server's Retry-After, or -1 if the server asks to wait longer than we are willing to.
+     */
+    public static long getDelayMillis(int retry, long retryAfterMillis) {
+        if (retryAfterMillis > MAX_RETRY_AFTER_MILLIS) {
+            return -1;
+        }
+        long cap = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(retry, 20));
+        long delay = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        return Math.max(delay, retryAfterMillis);
+    }
+
+    /**
+     * Parses the Retry-After header of a response, given in seconds or as an HTTP date. Returns -1 without one.
+     */
+    public static long getRetryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader(RETRY_AFTER);
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        String value = header.getValue().trim();
+        try {
+            return Math.max(Long.parseLong(value) * 1000, 0);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date != null ? Math.max(date.getTime() - System.currentTimeMillis(), 0) : -1;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the {@link CircuitBreaker} of the server is open. Nothing was sent, so
+ * the call can be tried again once the breaker lets requests through.
+ */
+public class ServerUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public ServerUnavailableException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the number of milliseconds until the breaker lets a request through again.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
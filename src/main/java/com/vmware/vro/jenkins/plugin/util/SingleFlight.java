@@ -0,0 +1,120 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds one cached value and runs at most one load of it at a time.
+ * <p/>
+ * Callers that need the value wait for the load in flight instead of starting their own, and a refresh requested
+ * while one is in flight is dropped. The caches of tokens, catalogs and schemas keep one per entry.
+ */
+public final class SingleFlight<T> {
+    private static final Logger LOGGER = Logger.getLogger(SingleFlight.class.getName());
+
+    private final String description;
+    private final Executor executor;
+    private volatile T value;
+    private FutureTask<T> inflight;
+
+    /**
+     * Creates an empty holder. The description, such as "the workflow catalog", names the value in errors and
+     * background loads run on the given executor.
+     */
+    public SingleFlight(String description, Executor executor) {
+        this.description = description;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the last loaded value, null if none was loaded or it was cleared.
+     */
+    public T get() {
+        return value;
+    }
+
+    /**
+     * Loads the value with the loader, or waits for the load in flight, and returns it.
+     */
+    public T load(Callable<T> loader) throws IOException {
+        FutureTask<T> task;
+        boolean owner = false;
+        synchronized (this) {
+            if (inflight == null) {
+                inflight = newLoadTask(loader);
+                owner = true;
+            }
+            task = inflight;
+        }
+        if (owner) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + description, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Loads the value on the executor unless a load is already in flight.
+     */
+    public void loadInBackground(Callable<T> loader) {
+        FutureTask<T> task;
+        synchronized (this) {
+            if (inflight != null) {
+                return;
+            }
+            task = newLoadTask(loader);
+            inflight = task;
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * Clears the value if it is still the given one, so that the next caller loads it again.
+     */
+    public synchronized void clear(T expected) {
+        if (value == expected) {
+            value = null;
+        }
+    }
+
+    /*
+     * A new task is only created while no other one is in flight, so the running task owns the slot and clears it
+     * when done.
+     */
+    private FutureTask<T> newLoadTask(final Callable<T> loader) {
+        return new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    T loaded = loader.call();
+                    synchronized (SingleFlight.this) {
+                        value = loaded;
+                    }
+                    return loaded;
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Failed to load " + description, e);
+                    throw e;
+                } finally {
+                    synchronized (SingleFlight.this) {
+                        inflight = null;
+                    }
+                }
+            }
+        });
+    }
+}
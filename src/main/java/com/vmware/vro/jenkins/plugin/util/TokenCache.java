@@ -0,0 +1,167 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches vRA identity tokens per server, tenant and user.
+ * <p/>
+ * Tokens are reused until they are about to expire. A caller that finds a token inside the refresh window still gets
+ * it, while a single background login replaces it. Concurrent callers that find no usable token wait for one shared
+ * login instead of each posting to the identity service.
+ */
+public final class TokenCache {
+    private static final String PROPERTY_PREFIX = TokenCache.class.getName() + ".";
+
+    static final long REFRESH_AHEAD_MILLIS = Long.getLong(PROPERTY_PREFIX + "refreshAhead", 5 * 60 * 1000L);
+    static final long DEFAULT_LIFETIME_MILLIS = Long.getLong(PROPERTY_PREFIX + "defaultLifetime", 30 * 60 * 1000L);
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    private static final ExecutorService REFRESHER = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("vRO token refresher"));
+
+    private TokenCache() {
+    }
+
+    /**
+     * Logs in to the identity service on a cache miss.
+     */
+    public interface TokenLoader {
+        Token load() throws Exception;
+    }
+
+    /**
+     * Returns a valid token for the given server, tenant and user, logging in through the loader only when needed.
+     */
+    public static String getToken(String serverUrl, String tenant, String userName, String password,
+                                  TokenLoader loader) throws IOException {
+        String key = CacheKeys.forUser(serverUrl, tenant, userName);
+        Entry entry = ENTRIES.get(key);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            entry = ENTRIES.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        String credentialDigest = CacheKeys.digest(password);
+        long now = System.currentTimeMillis();
+        Login login = entry.login.get();
+        Token token = login != null ? login.token : null;
+        if (token != null && credentialDigest.equals(login.credentialDigest) && !token.isExpired(now)) {
+            OrchestratorMetrics.recordTokenLookup(serverUrl, true);
+            if (token.isRefreshDue(now)) {
+                entry.refreshInBackground(loader, credentialDigest);
+            }
+            return token.getId();
+        }
+        OrchestratorMetrics.recordTokenLookup(serverUrl, false);
+        return entry.load(loader, credentialDigest).getId();
+    }
+
+    /**
+     * Drops the cached token if it is still the given one, so that the next request logs in again. Used when the
+     * server rejects a token before its advertised expiry.
+     */
+    public static void invalidate(String serverUrl, String tenant, String userName, String tokenId) {
+        Entry entry = ENTRIES.get(CacheKeys.forUser(serverUrl, tenant, userName));
+        if (entry != null) {
+            entry.invalidate(tokenId);
+        }
+    }
+
+    /**
+     * An identity token and the time it expires at.
+     */
+    public static class Token {
+        private final String id;
+        private final long expiresAt;
+
+        public Token(String id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt > 0 ? expiresAt : System.currentTimeMillis() + DEFAULT_LIFETIME_MILLIS;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        boolean isRefreshDue(long now) {
+            return now >= expiresAt - REFRESH_AHEAD_MILLIS;
+        }
+    }
+
+    /*
+     * A token and the digest of the password it was obtained with.
+     */
+    private static class Login {
+        private final Token token;
+        private final String credentialDigest;
+
+        Login(Token token, String credentialDigest) {
+            this.token = token;
+            this.credentialDigest = credentialDigest;
+        }
+    }
+
+    private static class Entry {
+        private final SingleFlight<Login> login = new SingleFlight<Login>("the auth token", REFRESHER);
+
+        /*
+         * A login in flight may have been started with another password, its token is never handed out to this
+         * caller. After joining such a login twice, the caller logs in on its own without caching the token.
+         */
+        Token load(TokenLoader loader, String digest) throws IOException {
+            Callable<Login> newLogin = newLoader(loader, digest);
+            for (int attempt = 0; attempt < 2; attempt++) {
+                Login loaded = login.load(newLogin);
+                if (digest.equals(loaded.credentialDigest)) {
+                    return loaded.token;
+                }
+            }
+            try {
+                return loader.load();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        void refreshInBackground(TokenLoader loader, String digest) {
+            login.loadInBackground(newLoader(loader, digest));
+        }
+
+        void invalidate(String tokenId) {
+            Login current = login.get();
+            if (current != null && current.token.getId().equals(tokenId)) {
+                login.clear(current);
+            }
+        }
+
+        private static Callable<Login> newLoader(final TokenLoader loader, final String digest) {
+            return new Callable<Login>() {
+                @Override
+                public Login call() throws Exception {
+                    return new Login(loader.load(), digest);
+                }
+            };
+        }
+    }
+}
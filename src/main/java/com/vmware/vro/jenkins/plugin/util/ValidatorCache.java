@@ -0,0 +1,93 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the bodies of catalog and metadata responses with their {@code ETag} and {@code Last-Modified} validators,
+ * so that {@link RestClient#httpGetCached} can revalidate them with a conditional GET and reuse the body on a
+ * {@code 304 Not Modified}.
+ * <p/>
+ * Entries are kept per server, tenant, user and url, least recently used first out once the bodies exceed the byte
+ * budget. Use the prefix {@code com.vmware.vro.jenkins.plugin.util.ValidatorCache.} for the system properties.
+ */
+public final class ValidatorCache {
+
+    private static final String PROPERTY_PREFIX = ValidatorCache.class.getName() + ".";
+
+    static final long MAX_BYTES = Long.getLong(PROPERTY_PREFIX + "maxBytes", 64L * 1024 * 1024);
+    static final int MAX_ENTRY_BYTES = Integer.getInteger(PROPERTY_PREFIX + "maxEntryBytes", 16 * 1024 * 1024);
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private static long totalBytes;
+
+    private ValidatorCache() {
+    }
+
+    /**
+     * Returns the cached response of the given key, or null.
+     */
+    public static Entry get(String key) {
+        synchronized (ENTRIES) {
+            return ENTRIES.get(key);
+        }
+    }
+
+    /**
+     * Caches a response, replacing the previous one of the key. Bodies larger than the entry limit are not kept.
+     */
+    public static void put(String key, Entry entry) {
+        if (entry.body.length > MAX_ENTRY_BYTES) {
+            return;
+        }
+        synchronized (ENTRIES) {
+            Entry previous = ENTRIES.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.body.length;
+            }
+            totalBytes += entry.body.length;
+            Iterator<Entry> eldest = ENTRIES.values().iterator();
+            while (totalBytes > MAX_BYTES && eldest.hasNext()) {
+                totalBytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    public static void remove(String key) {
+        synchronized (ENTRIES) {
+            Entry previous = ENTRIES.remove(key);
+            if (previous != null) {
+                totalBytes -= previous.body.length;
+            }
+        }
+    }
+
+    /**
+     * A response body and the validators it was served with, either of which may be null.
+     */
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final byte[] body;
+
+        public Entry(String etag, String lastModified, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
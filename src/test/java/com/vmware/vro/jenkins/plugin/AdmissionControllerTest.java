@@ -0,0 +1,115 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControllerTest {
+    private final AdmissionController controller = AdmissionController.getInstance();
+
+    @After
+    public void removeLimits() {
+        controller.setLimits(0, 0, 0);
+    }
+
+    @Test
+    public void admitsBurstAtOnceThenOneSubmissionPerToken() throws Exception {
+        controller.setLimits(0, 60, 3);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            controller.acquire("http://burst", "job", 0, new RecordingLogger());
+        }
+        assertTrue("burst was not admitted at once", elapsedMillis(start) < 500);
+
+        RecordingLogger logger = new RecordingLogger();
+        controller.acquire("http://burst", "job", 0, logger);
+        long waited = elapsedMillis(start);
+        assertTrue("admitted after " + waited + " ms, before the next token", waited >= 500);
+        assertTrue("admitted after " + waited + " ms, long after the next token", waited < 5000);
+        assertTrue(logger.output().contains("position 1 of 1"));
+    }
+
+    @Test
+    public void groupsTakeTurnsWithinPriority() throws Exception {
+        controller.setLimits(1, 0, 0);
+        AdmissionController.Permit holder = controller.acquire("http://fair", "a", 0, new RecordingLogger());
+        List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+
+        List<Thread> builds = new ArrayList<Thread>();
+        RecordingLogger a1 = startWaiting("http://fair", "a", 0, "a1", admitted, builds);
+        RecordingLogger a2 = startWaiting("http://fair", "a", 0, "a2", admitted, builds);
+        RecordingLogger b1 = startWaiting("http://fair", "b", 0, "b1", admitted, builds);
+        RecordingLogger c1 = startWaiting("http://fair", "c", 1, "c1", admitted, builds);
+        assertTrue(a1.output().contains("position 1 of 1"));
+        assertTrue(a2.output().contains("position 2 of 2"));
+        assertTrue(b1.output().contains("position 2 of 3"));
+        assertTrue(c1.output().contains("position 1 of 4"));
+
+        holder.release();
+        for (Thread build : builds) {
+            build.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        assertEquals(Arrays.asList("c1", "a1", "b1", "a2"), admitted);
+    }
+
+    /*
+     * Starts a build that records its name once admitted and releases its permit, and returns when it is queued.
+     */
+    private RecordingLogger startWaiting(final String serverUrl, final String group, final int priority,
+                                         final String name, final List<String> admitted, List<Thread> builds)
+            throws InterruptedException {
+        final RecordingLogger logger = new RecordingLogger();
+        Thread build = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AdmissionController.Permit permit = controller.acquire(serverUrl, group, priority, logger);
+                    admitted.add(name);
+                    permit.release();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        build.setDaemon(true);
+        build.start();
+        builds.add(build);
+        assertTrue(name + " was not queued", logger.waiting.await(10, TimeUnit.SECONDS));
+        return logger;
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static final class RecordingLogger extends PrintStream {
+        final CountDownLatch waiting = new CountDownLatch(1);
+
+        RecordingLogger() {
+            super(new ByteArrayOutputStream(), true);
+        }
+
+        @Override
+        public void println(String line) {
+            super.println(line);
+            if (line.startsWith("Waiting for admission")) {
+                waiting.countDown();
+            }
+        }
+
+        String output() {
+            return out.toString();
+        }
+    }
+}
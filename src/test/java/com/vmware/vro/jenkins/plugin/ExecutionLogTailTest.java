@@ -0,0 +1,107 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vmware.vro.jenkins.plugin.model.BuildParam;
+import com.vmware.vro.jenkins.plugin.model.ExecutionLogEntry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExecutionLogTailTest {
+    private static final String EXECUTION_URL = "http://logs/vco/api/workflows/wf/executions/1/";
+
+    @Test
+    public void pagesThroughEntriesSharingOneTimeAndPrintsEachOnce() {
+        FakeLogClient client = new FakeLogClient();
+        //More entries share the first time than fit in a page
+        client.log(1000, ExecutionLogTail.PAGE_SIZE + 50);
+        client.log(2000, 100);
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        ExecutionLogTail tail = new ExecutionLogTail(client, EXECUTION_URL, new PrintStream(console, true));
+
+        assertEquals(2, tail.poll());
+        List<String> lines = lines(console);
+        assertEquals(ExecutionLogTail.PAGE_SIZE + 150, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals("[vRO] INFO entry " + i, lines.get(i));
+        }
+
+        client.log(2000, 3);
+        client.log(3000, 1);
+        assertEquals(1, tail.poll());
+        lines = lines(console);
+        assertEquals(ExecutionLogTail.PAGE_SIZE + 154, lines.size());
+        assertEquals("[vRO] INFO entry " + (ExecutionLogTail.PAGE_SIZE + 153), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void stopsAfterRepeatedFailures() {
+        FakeLogClient client = new FakeLogClient();
+        client.failing = true;
+        ExecutionLogTail tail = new ExecutionLogTail(client, EXECUTION_URL,
+                new PrintStream(new ByteArrayOutputStream(), true));
+        for (int i = 0; i < ExecutionLogTail.MAX_FAILURES; i++) {
+            assertEquals(1, tail.poll());
+        }
+        client.failing = false;
+        assertEquals(0, tail.poll());
+        assertEquals(ExecutionLogTail.MAX_FAILURES, client.requests);
+    }
+
+    private static List<String> lines(ByteArrayOutputStream console) {
+        List<String> lines = new ArrayList<String>();
+        for (String line : console.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /*
+     * Serves the log of one execution like the syslogs service: entries at or after the time, oldest first, skipping
+     * the first startIndex of them.
+     */
+    private static final class FakeLogClient extends OrchestratorClient {
+        private final List<ExecutionLogEntry> entries = new ArrayList<ExecutionLogEntry>();
+        boolean failing;
+        int requests;
+
+        FakeLogClient() {
+            super(new BuildParam("http://logs", "user", "password", "tenant", "wf"));
+        }
+
+        void log(long timestamp, int count) {
+            for (int i = 0; i < count; i++) {
+                entries.add(new ExecutionLogEntry(timestamp, null, "INFO", "entry " + entries.size()));
+            }
+        }
+
+        @Override
+        public int fetchExecutionLogs(String executionUrl, long sinceMillis, int startIndex, int maxResult,
+                                      LogEntryHandler handler) throws IOException {
+            requests++;
+            if (failing) {
+                throw new IOException("unavailable");
+            }
+            int skipped = 0;
+            int count = 0;
+            for (ExecutionLogEntry entry : entries) {
+                if (entry.getTimestamp() < sinceMillis || skipped++ < startIndex) {
+                    continue;
+                }
+                if (count == maxResult) {
+                    break;
+                }
+                handler.handle(entry);
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vmware.vro.jenkins.plugin.model.ExecutionLogEntry;
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+import com.vmware.vro.jenkins.plugin.model.OutputParameter;
+import com.vmware.vro.jenkins.plugin.model.Workflow;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the streaming parsers of the server responses.
+ */
+public class OrchestratorClientTest {
+
+    @Test
+    public void parsesWorkflowPage() throws IOException {
+        String json = "{\"start-index\":0,\"link\":["
+                + "{\"attributes\":[{\"name\":\"id\",\"value\":\"a1\"},{\"name\":\"name\",\"value\":\"Deploy\"},"
+                + "{\"name\":\"description\",\"value\":null}],\"href\":\"x\"},"
+                + "{\"href\":\"no attributes\"},"
+                + "{\"attributes\":[{\"name\":\"name\",\"value\":\"Clean up\"},{\"name\":\"id\",\"value\":\"b2\"}]}"
+                + "],\"total\":1200}";
+        final List<Workflow> workflows = new ArrayList<Workflow>();
+        OrchestratorClient.PageResult result = OrchestratorClient.parseWorkflows(new StringReader(json),
+                new OrchestratorClient.WorkflowHandler() {
+                    @Override
+                    public void handle(Workflow workflow) {
+                        workflows.add(workflow);
+                    }
+                });
+
+        assertEquals(2, result.count);
+        assertEquals(1200, result.total);
+        assertEquals("a1", workflows.get(0).getId());
+        assertEquals("Deploy", workflows.get(0).getName());
+        assertEquals("b2", workflows.get(1).getId());
+        assertEquals("Clean up", workflows.get(1).getName());
+    }
+
+    @Test
+    public void parsesExecutionLogs() throws IOException {
+        String json = "{\"logs\":["
+                + "{\"entry\":{\"time-stamp\":\"2016-01-08T10:00:00Z\",\"time-stamp-val\":1452247200000,"
+                + "\"severity\":\"info\",\"short-description\":\"short\",\"long-description\":\"long\","
+                + "\"user\":\"admin\"}},"
+                + "{\"other\":1},"
+                + "{\"entry\":{\"time-stamp-val\":1452247201000,\"short-description\":\"only short\"}}"
+                + "],\"total\":2}";
+        final List<ExecutionLogEntry> entries = new ArrayList<ExecutionLogEntry>();
+        int count = OrchestratorClient.parseExecutionLogs(new StringReader(json),
+                new OrchestratorClient.LogEntryHandler() {
+                    @Override
+                    public void handle(ExecutionLogEntry entry) {
+                        entries.add(entry);
+                    }
+                });
+
+        assertEquals(2, count);
+        assertEquals(1452247200000L, entries.get(0).getTimestamp());
+        assertEquals("2016-01-08T10:00:00Z", entries.get(0).getTime());
+        assertEquals("info", entries.get(0).getSeverity());
+        assertEquals("long", entries.get(0).getDescription());
+        assertNull(entries.get(1).getSeverity());
+        assertEquals("only short", entries.get(1).getDescription());
+    }
+
+    @Test
+    public void parsesExecutionSnapshotAndKeepsOutputJson() throws IOException {
+        String json = "{\"id\":\"e1\",\"state\":\"completed\",\"start-date\":\"s\",\"end-date\":\"e\","
+                + "\"output-parameters\":["
+                + "{\"name\":\"vmName\",\"type\":\"string\",\"value\":{\"string\":{\"value\":\"vm-1\"}}},"
+                + "{\"name\":\"count\",\"type\":\"number\",\"value\":{\"number\":{\"value\":12345678901234567890}}},"
+                + "{\"name\":\"ready\",\"type\":\"boolean\",\"value\":{\"boolean\":{\"value\":true}}},"
+                + "{\"name\":\"ips\",\"type\":\"Array/string\",\"value\":{\"array\":{\"elements\":"
+                + "[{\"string\":{\"value\":\"10.0.0.1\"}}]}}},"
+                + "{\"name\":\"unset\",\"type\":\"string\",\"value\":{}},"
+                + "{\"type\":\"string\"}"
+                + "]}";
+        ExecutionSnapshot snapshot = OrchestratorClient.parseExecutionSnapshot(new StringReader(json));
+
+        assertEquals("completed", snapshot.getState());
+        assertTrue(snapshot.isCompleted());
+        assertTrue(snapshot.isSuccessful());
+        List<OutputParameter> outputs = snapshot.getOutputs();
+        assertEquals(5, outputs.size());
+        assertEquals("vmName", outputs.get(0).getName());
+        assertEquals("string", outputs.get(0).getType());
+        assertEquals("vm-1", outputs.get(0).getValue());
+        assertEquals("12345678901234567890", outputs.get(1).getValue());
+        assertEquals("true", outputs.get(2).getValue());
+        assertEquals("{\"elements\":[{\"string\":{\"value\":\"10.0.0.1\"}}]}", outputs.get(3).getValue());
+        assertNull(outputs.get(4).getValue());
+        assertEquals("{\"name\":\"vmName\",\"type\":\"string\",\"value\":{\"string\":{\"value\":\"vm-1\"}}}",
+                outputs.get(0).getJson());
+    }
+
+    @Test
+    public void runningExecutionIsNotCompleted() throws IOException {
+        ExecutionSnapshot snapshot = OrchestratorClient.parseExecutionSnapshot(
+                new StringReader("{\"state\":\"running\",\"content-exception\":null}"));
+        assertEquals("running", snapshot.getState());
+        assertFalse(snapshot.isCompleted());
+        assertTrue(snapshot.getOutputs().isEmpty());
+    }
+}
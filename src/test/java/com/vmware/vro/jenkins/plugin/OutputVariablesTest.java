@@ -0,0 +1,50 @@
+package com.vmware.vro.jenkins.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vmware.vro.jenkins.plugin.model.ExecutionSnapshot;
+import com.vmware.vro.jenkins.plugin.model.OutputParameter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputVariablesTest {
+
+    @Test
+    public void setsVariablesAndLogsSizesInsteadOfValues() throws Exception {
+        ExecutionSnapshot snapshot = new ExecutionSnapshot();
+        snapshot.setOutputs(Arrays.asList(
+                output("vm name", "string", "vm-1"),
+                output("password", "SecureString", "s3cr3t"),
+                output("vm-name", "string", "other")));
+        Map<String, String> data = new HashMap<String, String>();
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        OutputVariables.collect(snapshot, null, data, new PrintStream(console, true));
+
+        assertEquals("vm-1", data.get("ORCHESTRATOR_OUTPUT_vm_name"));
+        assertEquals("s3cr3t", data.get("ORCHESTRATOR_OUTPUT_password"));
+        String log = console.toString();
+        assertTrue(log, log.contains("ORCHESTRATOR_OUTPUT_vm_name : 4 characters"));
+        assertTrue(log, log.contains("ORCHESTRATOR_OUTPUT_password : ********"));
+        assertTrue(log, log.contains("ignoring vm-name"));
+        assertFalse(log, log.contains("vm-1"));
+        assertFalse(log, log.contains("s3cr3t"));
+    }
+
+    @Test
+    public void replacesInvalidCharactersOfVariableNames() {
+        assertEquals("vm_name_1", OutputVariables.toVariableName("vm-name.1"));
+    }
+
+    private static OutputParameter output(String name, String type, String value) {
+        return new OutputParameter(name, type, "{\"name\":\"" + name + "\",\"type\":\"" + type
+                + "\",\"value\":{\"string\":{\"value\":\"" + value + "\"}}}", true);
+    }
+}
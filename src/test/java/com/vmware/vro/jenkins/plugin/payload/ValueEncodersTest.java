@@ -0,0 +1,115 @@
+package com.vmware.vro.jenkins.plugin.payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+import com.vmware.vro.jenkins.plugin.model.Parameter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ValueEncodersTest {
+
+    @Test
+    public void encodesScalars() throws IOException {
+        assertEquals("{\"string\":{\"value\":\"a, b\"}}", encode("string", "a, b"));
+        assertEquals("{\"string\":{\"value\":\"secret\"}}", encode("SecureString", "secret"));
+        assertEquals("{\"number\":{\"value\":12345678901234567890.5}}", encode("number", " 12345678901234567890.5 "));
+        assertEquals("{\"number\":{\"value\":\"twelve\"}}", encode("number", "twelve"));
+        assertEquals("{\"boolean\":{\"value\":true}}", encode("boolean", "TRUE"));
+        assertEquals("{\"date\":{\"value\":\"2016-01-08T10:00:00Z\"}}", encode("Date", "2016-01-08T10:00:00Z"));
+    }
+
+    @Test
+    public void encodesSdkObjects() throws IOException {
+        assertEquals("{\"sdk-object\":{\"id\":\"vm-42\",\"type\":\"VC:VirtualMachine\"}}",
+                encode("VC:VirtualMachine", "vm-42"));
+    }
+
+    @Test
+    public void encodesArraysFromListsOrJson() throws IOException {
+        String expected = "{\"array\":{\"elements\":[{\"number\":{\"value\":1}},{\"number\":{\"value\":2}}]}}";
+        assertEquals(expected, encode("Array/number", "1, 2"));
+        assertEquals(expected, encode("Array/number", "[1,2]"));
+        assertEquals("{\"array\":{\"elements\":[{\"string\":{\"value\":\"a,b\"}},{\"string\":{\"value\":\"c\"}}]}}",
+                encode("Array/string", "a\\,b,c,"));
+        assertEquals("{\"array\":{\"elements\":[]}}", encode("Array/string", null));
+    }
+
+    @Test
+    public void encodesPropertiesAndInfersNestedTypes() throws IOException {
+        assertEquals("{\"properties\":{\"property\":[{\"key\":\"a\",\"value\":{\"string\":{\"value\":\"1\"}}}]}}",
+                encode("Properties", "a=1"));
+        assertEquals("{\"properties\":{\"property\":["
+                        + "{\"key\":\"n\",\"value\":{\"number\":{\"value\":1}}},"
+                        + "{\"key\":\"b\",\"value\":{\"boolean\":{\"value\":false}}},"
+                        + "{\"key\":\"l\",\"value\":{\"array\":{\"elements\":[{\"string\":{\"value\":\"x\"}}]}}}]}}",
+                encode("Properties", "{\"n\":1,\"b\":false,\"l\":[\"x\"]}"));
+    }
+
+    @Test
+    public void encodesCompositeFieldsInValueOrder() throws IOException {
+        assertEquals("{\"composite\":{\"type\":\"CompositeType(name:string,tags:Array/string):Disk\",\"property\":["
+                        + "{\"id\":\"tags\",\"value\":{\"array\":{\"elements\":[{\"string\":{\"value\":\"t\"}}]}}},"
+                        + "{\"id\":\"name\",\"value\":{\"string\":{\"value\":\"disk\"}}}]}}",
+                encode("CompositeType(name:string,tags:Array/string):Disk",
+                        "{\"tags\":[\"t\"],\"unknown\":1,\"name\":\"disk\"}"));
+    }
+
+    @Test
+    public void encodesMimeAttachment() throws IOException {
+        assertEquals("{\"mime-attachment\":{\"name\":\"a.txt\",\"content\":\"aGk=\"}}",
+                encode("MimeAttachment", "{\"name\":\"a.txt\",\"size\":2,\"content\":\"aGk=\"}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidJson() throws IOException {
+        encode("Properties", "{\"a\":");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPropertiesWithoutValue() throws IOException {
+        encode("Properties", "a");
+    }
+
+    @Test
+    public void payloadEncoderSurvivesSerialization() throws Exception {
+        List<Parameter> parameters = Arrays.asList(new Parameter("name@string", null, "vm"),
+                new Parameter("disks@Array/CompositeType(size:number):Disk", null, "[{\"size\":10}]"),
+                new Parameter("plain", null, "text"));
+        PayloadEncoder encoder = PayloadEncoder.compile(parameters);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(encoder);
+        out.close();
+        PayloadEncoder copy = (PayloadEncoder) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertTrue(copy.isCompiledFor(parameters));
+        assertEquals(encoder.toJson(parameters), copy.toJson(parameters));
+        assertEquals("{\"parameters\":["
+                + "{\"name\":\"name\",\"type\":\"string\",\"value\":{\"string\":{\"value\":\"vm\"}}},"
+                + "{\"name\":\"disks\",\"type\":\"Array/CompositeType(size:number):Disk\",\"value\":{\"array\":"
+                + "{\"elements\":[{\"composite\":{\"type\":\"CompositeType(size:number):Disk\",\"property\":["
+                + "{\"id\":\"size\",\"value\":{\"number\":{\"value\":10}}}]}}]}}},"
+                + "{\"name\":\"plain\",\"type\":\"string\",\"value\":{\"string\":{\"value\":\"text\"}}}]}",
+                copy.toJson(parameters));
+    }
+
+    private static String encode(String type, String value) throws IOException {
+        StringWriter json = new StringWriter();
+        JsonWriter writer = new JsonWriter(json);
+        ValueEncoders.compile(type).write(writer, value);
+        writer.flush();
+        return json.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The build runs the tests with a short open duration, see the surefire configuration of the pom.
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterThresholdOfFailuresInARow() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.forServer("http://threshold");
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            breaker.recordFailure(breaker.acquire());
+        }
+        breaker.recordSuccess(breaker.acquire());
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            breaker.recordFailure(breaker.acquire());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure(breaker.acquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            breaker.acquire();
+            fail("an open breaker let a request through");
+        } catch (ServerUnavailableException e) {
+            assertTrue(e.getRetryAfterMillis() > 0);
+        }
+    }
+
+    @Test
+    public void halfOpenBreakerLetsOneProbeThroughAndClosesOnItsSuccess() throws Exception {
+        CircuitBreaker breaker = open("http://probe-success");
+        //Calls let through while closed have the id 0
+        long staleCall = 0;
+        Thread.sleep(CircuitBreaker.OPEN_MILLIS + 50);
+
+        long probe = breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(probe != 0);
+        try {
+            breaker.acquire();
+            fail("a second request went through while the probe is running");
+        } catch (ServerUnavailableException expected) {
+            //Only the probe is let through
+        }
+
+        //Calls sent before the breaker opened neither close nor open it again
+        breaker.recordSuccess(staleCall);
+        breaker.recordFailure(staleCall);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.recordSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.acquire());
+    }
+
+    @Test
+    public void failedProbeOpensTheBreakerAgain() throws Exception {
+        CircuitBreaker breaker = open("http://probe-failure");
+        Thread.sleep(CircuitBreaker.OPEN_MILLIS + 50);
+
+        breaker.recordFailure(breaker.acquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            breaker.acquire();
+            fail("the breaker let a request through after its probe failed");
+        } catch (ServerUnavailableException expected) {
+            //Open for another open duration
+        }
+    }
+
+    @Test
+    public void removeKeepsOpenBreakers() throws Exception {
+        CircuitBreaker open = open("http://removed-open");
+        CircuitBreaker.remove("http://removed-open");
+        assertTrue(open == CircuitBreaker.forServer("http://removed-open"));
+
+        CircuitBreaker closed = CircuitBreaker.forServer("http://removed-closed");
+        CircuitBreaker.remove("http://removed-closed");
+        assertTrue(closed != CircuitBreaker.forServer("http://removed-closed"));
+    }
+
+    private static CircuitBreaker open(String serverUrl) throws ServerUnavailableException {
+        CircuitBreaker breaker = CircuitBreaker.forServer(serverUrl);
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.recordFailure(breaker.acquire());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
@@ -0,0 +1,82 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void retriesOnlyUnsentOrThrottledPosts() {
+        assertTrue(RetryPolicy.isRetryable(503, true));
+        assertTrue(RetryPolicy.isRetryable(429, false));
+        assertFalse(RetryPolicy.isRetryable(503, false));
+        assertFalse(RetryPolicy.isRetryable(500, true));
+
+        assertTrue(RetryPolicy.isRetryable(new ConnectException(), false));
+        assertTrue(RetryPolicy.isRetryable(new SocketException("Connection reset"), true));
+        assertFalse(RetryPolicy.isRetryable(new SocketException("Connection reset"), false));
+        assertFalse(RetryPolicy.isRetryable(new SocketTimeoutException(), true));
+        assertFalse(RetryPolicy.isRetryable(new ServerUnavailableException("open", 1000), true));
+    }
+
+    @Test
+    public void delaysAreJitteredUpToTheBackoffCap() {
+        long cap = Math.min(RetryPolicy.MAX_DELAY_MILLIS, RetryPolicy.BASE_DELAY_MILLIS * 4);
+        Set<Long> delays = new HashSet<Long>();
+        for (int i = 0; i < 100; i++) {
+            long delay = RetryPolicy.getDelayMillis(2, -1);
+            assertTrue(delay >= 0 && delay <= cap);
+            delays.add(delay);
+        }
+        assertTrue("delays are not jittered: " + delays, delays.size() > 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(RetryPolicy.getDelayMillis(100, -1) <= RetryPolicy.MAX_DELAY_MILLIS);
+        }
+    }
+
+    @Test
+    public void delaysHonourRetryAfter() {
+        long retryAfter = RetryPolicy.MAX_DELAY_MILLIS + 1000;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(retryAfter, RetryPolicy.getDelayMillis(0, retryAfter));
+        }
+        assertEquals(-1, RetryPolicy.getDelayMillis(0, RetryPolicy.MAX_RETRY_AFTER_MILLIS + 1));
+    }
+
+    @Test
+    public void parsesRetryAfterInSecondsOrAsDate() throws IOException {
+        assertEquals(-1, RetryPolicy.getRetryAfterMillis(response(null)));
+        assertEquals(2000, RetryPolicy.getRetryAfterMillis(response(" 2 ")));
+        assertEquals(-1, RetryPolicy.getRetryAfterMillis(response("soon")));
+
+        long millis = RetryPolicy.getRetryAfterMillis(
+                response(DateUtils.formatDate(new Date(System.currentTimeMillis() + 10000))));
+        assertTrue("Retry-After date gave " + millis, millis > 8000 && millis <= 10000);
+        assertEquals(0, RetryPolicy.getRetryAfterMillis(
+                response(DateUtils.formatDate(new Date(System.currentTimeMillis() - 10000)))));
+    }
+
+    private static HttpResponse response(String retryAfter) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+        if (retryAfter != null) {
+            response.addHeader("Retry-After", retryAfter);
+        }
+        return response;
+    }
+}
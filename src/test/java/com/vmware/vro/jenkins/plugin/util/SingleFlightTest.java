@@ -0,0 +1,126 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final SingleFlight<String> flight = new SingleFlight<String>("the value", executor);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "loaded";
+            }
+        };
+
+        List<Future<String>> callers = new ArrayList<Future<String>>();
+        for (int i = 0; i < 5; i++) {
+            callers.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return flight.load(loader);
+                }
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        //Let the other callers join the load in flight
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<String> caller : callers) {
+            assertEquals("loaded", caller.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals("loaded", flight.get());
+    }
+
+    @Test
+    public void failedLoadIsNotCachedAndTheNextCallerLoadsAgain() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<String>("the value", executor);
+        try {
+            flight.load(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IllegalStateException("down");
+                }
+            });
+            fail("the failure of the loader was not thrown");
+        } catch (IOException e) {
+            assertEquals("down", e.getMessage());
+        }
+        assertNull(flight.get());
+        assertEquals("up", flight.load(constant("up")));
+    }
+
+    @Test
+    public void backgroundLoadIsDroppedWhileOneIsInFlight() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<String>("the value", executor);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<String> slow = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                release.await();
+                return "first";
+            }
+        };
+        flight.loadInBackground(slow);
+        flight.loadInBackground(slow);
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (flight.get() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("first", flight.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void clearOnlyDropsTheExpectedValue() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<String>("the value", executor);
+        String loaded = flight.load(constant(new String("value")));
+        flight.clear(new String("value"));
+        assertTrue(loaded == flight.get());
+        flight.clear(loaded);
+        assertNull(flight.get());
+    }
+
+    private static Callable<String> constant(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.vmware.vro.jenkins.plugin.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenCacheTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void reusesTokenUntilItExpires() throws Exception {
+        CountingLoader loader = new CountingLoader("token", System.currentTimeMillis() + 60 * 60 * 1000L);
+        assertEquals("token-1", TokenCache.getToken("http://reuse", "tenant", "user", "secret", loader));
+        assertEquals("token-1", TokenCache.getToken("http://reuse", "tenant", "user", "secret", loader));
+        assertEquals(1, loader.logins.get());
+
+        TokenCache.invalidate("http://reuse", "tenant", "user", "token-1");
+        assertEquals("token-2", TokenCache.getToken("http://reuse", "tenant", "user", "secret", loader));
+    }
+
+    @Test
+    public void tokenDueForRefreshIsReturnedWhileOneLoginReplacesIt() throws Exception {
+        CountingLoader loader = new CountingLoader("token",
+                System.currentTimeMillis() + TokenCache.REFRESH_AHEAD_MILLIS / 2);
+        assertEquals("token-1", TokenCache.getToken("http://refresh", "tenant", "user", "secret", loader));
+        assertEquals("token-1", TokenCache.getToken("http://refresh", "tenant", "user", "secret", loader));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (loader.logins.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(2, loader.logins.get());
+    }
+
+    @Test
+    public void neverReturnsTokenOfLoginWithAnotherPassword() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TokenCache.TokenLoader oldPassword = new TokenCache.TokenLoader() {
+            @Override
+            public TokenCache.Token load() throws Exception {
+                started.countDown();
+                release.await();
+                return new TokenCache.Token("old-password-token", 0);
+            }
+        };
+        final TokenCache.TokenLoader newPassword = new TokenCache.TokenLoader() {
+            @Override
+            public TokenCache.Token load() {
+                return new TokenCache.Token("new-password-token", 0);
+            }
+        };
+
+        Future<String> first = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return TokenCache.getToken("http://password", "tenant", "user", "old", oldPassword);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Future<String> second = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return TokenCache.getToken("http://password", "tenant", "user", "new", newPassword);
+            }
+        });
+        //Let the second caller join the login in flight
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals("old-password-token", first.get(10, TimeUnit.SECONDS));
+        assertEquals("new-password-token", second.get(10, TimeUnit.SECONDS));
+        assertEquals("new-password-token",
+                TokenCache.getToken("http://password", "tenant", "user", "new", newPassword));
+    }
+
+    private static final class CountingLoader implements TokenCache.TokenLoader {
+        final AtomicInteger logins = new AtomicInteger();
+        private final String prefix;
+        private final long expiresAt;
+
+        CountingLoader(String prefix, long expiresAt) {
+            this.prefix = prefix;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public TokenCache.Token load() {
+            return new TokenCache.Token(prefix + "-" + logins.incrementAndGet(), expiresAt);
+        }
+    }
+}